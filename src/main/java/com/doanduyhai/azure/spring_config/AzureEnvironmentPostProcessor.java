@@ -13,28 +13,39 @@
  */
 package com.doanduyhai.azure.spring_config;
 
+import static com.doanduyhai.azure.spring_config.Constants.AZURE_KEYVAULT_PROPERTYSOURCE_NAME;
 import static com.doanduyhai.azure.spring_config.Constants.AZURE_TABLE_ENABLED_KEY;
-import static com.doanduyhai.azure.spring_config.Constants.AZURE_KEYVAULT_ENABLED_KEY;
+import static com.doanduyhai.azure.spring_config.Constants.AZURE_TABLE_PROPERTYSOURCE_NAME;
+import static com.doanduyhai.azure.spring_config.Constants.DEFAULT_BOOTSTRAP_TIMEOUT_MS;
 import static com.doanduyhai.azure.spring_config.azure_table.AzureTableProperties.CONNECTION_STRING_KEYVAUL_SECRET_NAME_PATTERN;
 import static com.doanduyhai.azure.spring_config.utils.Validator.validateTrue;
 import static java.lang.String.format;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.context.config.ConfigFileApplicationListener;
 import org.springframework.boot.env.EnvironmentPostProcessor;
 import org.springframework.boot.logging.DeferredLog;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.Ordered;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ClassUtils;
 
 import com.doanduyhai.azure.spring_config.azure_table.AzureTableEnvironmentProcessor;
 import com.doanduyhai.azure.spring_config.azure_table.AzureTableProperties;
+import com.doanduyhai.azure.spring_config.azure_table.AzureTablePropertySource;
 import com.doanduyhai.azure.spring_config.keyvault.KeyVaultEnvironmentProcessor;
 import com.doanduyhai.azure.spring_config.keyvault.KeyVaultProperties;
+import com.doanduyhai.azure.spring_config.keyvault.KeyVaultPropertySource;
 import com.doanduyhai.azure.spring_config.keyvault.KeyVaultProperties.Property;
 
 @Component
@@ -67,8 +78,7 @@ public class AzureEnvironmentPostProcessor implements EnvironmentPostProcessor,
         this.environment = environment;
         final KeyVaultEnvironmentProcessor helper = new KeyVaultEnvironmentProcessor(logger, environment);
         if (isKeyVaultEnabled(environment)) {
-            helper.addKeyVaultPropertySource();
-            maybeConfigureAzureTable(environment, helper);
+            bootstrap(environment, helper);
         }
 
         if (this.environment != null) {
@@ -94,13 +104,34 @@ public class AzureEnvironmentPostProcessor implements EnvironmentPostProcessor,
             && isKeyVaultClientAvailable();
     }
 
-    private void maybeConfigureAzureTable(ConfigurableEnvironment environment, KeyVaultEnvironmentProcessor keyVaultHelper) {
-        Boolean tableEnabled = environment.getProperty(AzureTableProperties.getPropertyName(AzureTableProperties.Property.ENABLED),
-                Boolean.class,
-                true);
+    /**
+     * Load the key vault and the Azure table property sources concurrently, then add them to the environment.
+     * <p>
+     * The key vault secrets and the table connection string are fetched at the same time, and the table is
+     * loaded as soon as its connection string arrives. Everything is joined within
+     * <em>azure.keyvault.bootstrap-timeout</em> before touching the environment.
+     * </p>
+     * <p>
+     * With <em>azure.keyvault.background-loading</em>, the property sources are registered right away as
+     * {@link BackgroundPropertySource} and the join happens on a background thread, so that Spring carries on
+     * with its bootstrap while the Azure calls are in flight. The first property read blocks until they are loaded.
+     * </p>
+     *
+     * @param environment    the environment.
+     * @param keyVaultHelper the key vault helper.
+     */
+    private void bootstrap(ConfigurableEnvironment environment, KeyVaultEnvironmentProcessor keyVaultHelper) {
+        final long timeout = environment.getProperty(
+                KeyVaultProperties.getPropertyName(Property.BOOTSTRAP_TIMEOUT),
+                Long.class,
+                DEFAULT_BOOTSTRAP_TIMEOUT_MS);
+        final BootstrapPipeline pipeline = new BootstrapPipeline(timeout, 3);
+        final CompletableFuture<KeyVaultPropertySource> keyVaultSource = pipeline.start("key vault secrets",
+                keyVaultHelper::createKeyVaultPropertySource);
 
-        if (tableEnabled) {
-            validateTrue(isKeyVaultEnabled(environment), format("If '%s' = true then '%s' should be true and the key vault configured properly", AZURE_TABLE_ENABLED_KEY, AZURE_KEYVAULT_ENABLED_KEY));
+        CompletableFuture<AzureTablePropertySource> tableSource = null;
+        final AzureTableEnvironmentProcessor azureTableEnvironmentProcessor = new AzureTableEnvironmentProcessor(logger, environment);
+        if (isAzureTableEnabled(environment)) {
             String storageAccountNameProperty = AzureTableProperties.getPropertyName(AzureTableProperties.Property.STORAGE_ACCOUNT_NAME);
             String storageAccountName = environment.getProperty(storageAccountNameProperty);
             validateTrue(StringUtils.isNotBlank(storageAccountName), format("If '%s' = true, then you should provide the property '%s'", AZURE_TABLE_ENABLED_KEY, storageAccountNameProperty));
@@ -110,15 +141,76 @@ public class AzureEnvironmentPostProcessor implements EnvironmentPostProcessor,
             validateTrue(StringUtils.isNotBlank(tableName), format("If '%s' = true, then you should provide the property '%s'", AZURE_TABLE_ENABLED_KEY, tableNameProperty));
 
             String keyVaultSecretName = format(CONNECTION_STRING_KEYVAUL_SECRET_NAME_PATTERN, storageAccountName);
-            String tableConnectionString = keyVaultHelper.getKeyVaultSecret(keyVaultSecretName);
-            validateTrue(StringUtils.isNotBlank(tableConnectionString), format("The '%s' secret should be present in the key vault '%s'", keyVaultSecretName, keyVaultHelper.getVaultUri()));
+            final CompletableFuture<String> tableConnectionString = pipeline.start("table connection string",
+                    () -> getTableConnectionString(keyVaultHelper, keyVaultSecretName, keyVaultSource));
+            tableSource = pipeline.then("azure table", tableConnectionString,
+                    connectionString -> azureTableEnvironmentProcessor.createAzureTablePropertySource(connectionString, tableName));
+        }
+
+        final boolean backgroundLoading = environment.getProperty(
+                KeyVaultProperties.getPropertyName(Property.BACKGROUND_LOADING),
+                Boolean.class,
+                false);
+        if (backgroundLoading) {
+            final CompletableFuture<Void> warmUp = warmUpInBackground(pipeline);
+            keyVaultHelper.registerKeyVaultPropertySource(new BackgroundPropertySource(AZURE_KEYVAULT_PROPERTYSOURCE_NAME,
+                    warmUp.thenCompose(ignored -> keyVaultSource), timeout));
+            if (tableSource != null) {
+                final CompletableFuture<AzureTablePropertySource> loadedTableSource = tableSource;
+                azureTableEnvironmentProcessor.registerAzureTablePropertySource(new BackgroundPropertySource(AZURE_TABLE_PROPERTYSOURCE_NAME,
+                        warmUp.thenCompose(ignored -> loadedTableSource), timeout));
+            }
+            return;
+        }
+
+        pipeline.await();
+        logger.info("Azure configuration bootstrap:" + pipeline.report());
 
-            AzureTableEnvironmentProcessor azureTableEnvironmentProcessor = new AzureTableEnvironmentProcessor(logger, environment);
-            azureTableEnvironmentProcessor.addAzureTablePropertySource(tableConnectionString, tableName);
+        keyVaultHelper.registerKeyVaultPropertySource(keyVaultSource.join());
+        if (tableSource != null) {
+            azureTableEnvironmentProcessor.registerAzureTablePropertySource(tableSource.join());
         }
+    }
 
+    private CompletableFuture<Void> warmUpInBackground(BootstrapPipeline pipeline) {
+        final CompletableFuture<Void> warmUp = new CompletableFuture<>();
+        final Thread warmUpThread = new Thread(() -> {
+            try {
+                pipeline.await();
+                logger.info("Azure configuration bootstrap:" + pipeline.report());
+                warmUp.complete(null);
+            } catch (RuntimeException ex) {
+                logger.error("Azure configuration bootstrap failed", ex);
+                warmUp.completeExceptionally(ex);
+            }
+        }, "azure-config-warmup");
+        warmUpThread.setDaemon(true);
+        warmUpThread.start();
+        return warmUp;
+    }
+
+    private boolean isAzureTableEnabled(ConfigurableEnvironment environment) {
+        return environment.getProperty(AzureTableProperties.getPropertyName(AzureTableProperties.Property.ENABLED),
+                Boolean.class,
+                true);
     }
 
+    private String getTableConnectionString(KeyVaultEnvironmentProcessor keyVaultHelper, String keyVaultSecretName,
+                                            CompletableFuture<KeyVaultPropertySource> keyVaultSource) {
+        String tableConnectionString;
+        try {
+            tableConnectionString = keyVaultHelper.getKeyVaultSecret(keyVaultSecretName);
+        } catch (RuntimeException ex) {
+            // Once loaded, possibly from its local cache, the key vault source can serve the secret instead
+            if (keyVaultSource.handle((source, failure) -> failure == null).join()) {
+                tableConnectionString = keyVaultHelper.getKeyVaultSecret(keyVaultSecretName);
+            } else {
+                throw ex;
+            }
+        }
+        validateTrue(StringUtils.isNotBlank(tableConnectionString), format("The '%s' secret should be present in the key vault '%s'", keyVaultSecretName, keyVaultHelper.getVaultUri()));
+        return tableConnectionString;
+    }
 
     private boolean isKeyVaultClientAvailable() {
         return ClassUtils.isPresent("com.azure.security.keyvault.secrets.SecretClient",
@@ -137,6 +229,42 @@ public class AzureEnvironmentPostProcessor implements EnvironmentPostProcessor,
     @Override
     public void onApplicationEvent(ApplicationEvent applicationEvent) {
         logger.replayTo(AzureEnvironmentPostProcessor.class);
+        if (applicationEvent instanceof ContextRefreshedEvent) {
+            final ApplicationContext context = ((ContextRefreshedEvent) applicationEvent).getApplicationContext();
+            if (context.getParent() == null && context.getEnvironment() instanceof ConfigurableEnvironment) {
+                final PropertySource<?> propertySource = ((ConfigurableEnvironment) context.getEnvironment())
+                        .getPropertySources()
+                        .get(AZURE_KEYVAULT_PROPERTYSOURCE_NAME);
+                if (propertySource instanceof KeyVaultPropertySource) {
+                    ((KeyVaultPropertySource) propertySource).getSource().setEventPublisher(context);
+                } else if (propertySource instanceof BackgroundPropertySource) {
+                    ((BackgroundPropertySource) propertySource).getLoading().thenAccept(loaded -> {
+                        if (loaded instanceof KeyVaultPropertySource) {
+                            ((KeyVaultPropertySource) loaded).getSource().setEventPublisher(context);
+                        }
+                    });
+                }
+            }
+        } else if (applicationEvent instanceof ContextClosedEvent) {
+            final ApplicationContext context = ((ContextClosedEvent) applicationEvent).getApplicationContext();
+            if (context.getParent() == null && context.getEnvironment() instanceof ConfigurableEnvironment) {
+                final MutablePropertySources propertySources = ((ConfigurableEnvironment) context.getEnvironment()).getPropertySources();
+                close(propertySources.get(AZURE_KEYVAULT_PROPERTYSOURCE_NAME));
+                close(propertySources.get(AZURE_TABLE_PROPERTYSOURCE_NAME));
+            }
+        }
+    }
 
+    /**
+     * Stop the refreshes of an Azure property source, once loaded if it is still loading in the background
+     */
+    private void close(PropertySource<?> propertySource) {
+        if (propertySource instanceof KeyVaultPropertySource) {
+            ((KeyVaultPropertySource) propertySource).getSource().close();
+        } else if (propertySource instanceof AzureTablePropertySource) {
+            ((AzureTablePropertySource) propertySource).getSource().close();
+        } else if (propertySource instanceof BackgroundPropertySource) {
+            ((BackgroundPropertySource) propertySource).getLoading().thenAccept(this::close);
+        }
     }
 }
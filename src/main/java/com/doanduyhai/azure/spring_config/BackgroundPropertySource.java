@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config;
+
+import static java.lang.String.format;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.core.env.EnumerablePropertySource;
+
+/**
+ * Stand-in registered in place of an Azure property source while it is still loading in the background.
+ * <br/>
+ * Once the actual property source is loaded, every call is delegated to it. Before that, the first access
+ * blocks until the property source is loaded, at most for the bootstrap timeout, so that a property is never
+ * answered from another source while its Azure value is on its way. Spring carries on with its bootstrap
+ * until the first property is read.
+ * <br/>
+ * If the loading failed or did not complete within the timeout, any access throws the failure
+ * <br/>
+ * The steps of the {@link BootstrapPipeline} read the settings of this library from the environment while loading,
+ * so they see this stand-in as empty instead of waiting for themselves
+ */
+class BackgroundPropertySource extends EnumerablePropertySource<CompletableFuture<? extends EnumerablePropertySource<?>>> {
+
+    private static final String[] NO_PROPERTY_NAMES = new String[0];
+
+    private final long timeoutMillis;
+    private volatile EnumerablePropertySource<?> loaded;
+
+    BackgroundPropertySource(String name, CompletableFuture<? extends EnumerablePropertySource<?>> loading, long timeoutMillis) {
+        super(name, loading);
+        this.timeoutMillis = timeoutMillis;
+        loading.thenAccept(propertySource -> loaded = propertySource);
+    }
+
+    /**
+     * Get the loading of the actual property source
+     * @return the future completed with the actual property source
+     */
+    CompletableFuture<? extends EnumerablePropertySource<?>> getLoading() {
+        return getSource();
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        final EnumerablePropertySource<?> propertySource = current();
+        return propertySource != null ? propertySource.getPropertyNames() : NO_PROPERTY_NAMES;
+    }
+
+    @Override
+    public boolean containsProperty(String name) {
+        final EnumerablePropertySource<?> propertySource = current();
+        return propertySource != null && propertySource.containsProperty(name);
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        final EnumerablePropertySource<?> propertySource = current();
+        return propertySource != null ? propertySource.getProperty(name) : null;
+    }
+
+    private EnumerablePropertySource<?> current() {
+        final EnumerablePropertySource<?> propertySource = loaded;
+        if (propertySource != null || BootstrapPipeline.isRunningStep()) {
+            return propertySource;
+        }
+        try {
+            return getSource().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(format("The property source '%s' failed to load", getName()), ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new IllegalStateException(format("The property source '%s' was not loaded within %d ms", getName(), timeoutMillis), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(format("Interrupted while waiting for the property source '%s'", getName()), ex);
+        }
+    }
+}
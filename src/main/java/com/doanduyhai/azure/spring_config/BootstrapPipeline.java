@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.doanduyhai.azure.spring_config.utils.Validator;
+
+/**
+ * Runs the independent steps of the bootstrap concurrently, each dependent step starting as soon as
+ * its upstream step completes, so that the startup only waits for the longest chain of calls.
+ * <br/>
+ * {@link #await()} joins all the steps within a deadline. If a step fails or the deadline is exceeded,
+ * it throws an exception reporting the outcome and the duration of every step
+ */
+class BootstrapPipeline {
+
+    private static final ThreadLocal<Boolean> RUNNING_STEP = ThreadLocal.withInitial(() -> false);
+
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+    private final List<Step> steps = new ArrayList<>();
+    private final List<CompletableFuture<?>> results = new ArrayList<>();
+
+    BootstrapPipeline(long timeoutMillis, int threads) {
+        Validator.validateTrue(timeoutMillis > 0, "The provided timeoutMillis should be strictly positive");
+        this.timeoutMillis = timeoutMillis;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "azure-config-bootstrap-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Tell whether the current thread is running a step of a bootstrap pipeline
+     * @return true while a step runs on the current thread
+     */
+    static boolean isRunningStep() {
+        return RUNNING_STEP.get();
+    }
+
+    /**
+     * Start a step right away
+     * @param name the step name, used in the report
+     * @param work the step
+     * @return the step result
+     */
+    <T> CompletableFuture<T> start(String name, Supplier<T> work) {
+        final Step step = new Step(name);
+        final CompletableFuture<T> result = CompletableFuture.supplyAsync(() -> step.run(work), executor);
+        steps.add(step);
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * Start a step once its upstream step has completed. The step is skipped if the upstream step fails
+     * @param name the step name, used in the report
+     * @param upstream the result of the upstream step
+     * @param work the step, given the upstream result
+     * @return the step result
+     */
+    <U, T> CompletableFuture<T> then(String name, CompletableFuture<U> upstream, Function<U, T> work) {
+        final Step step = new Step(name);
+        final CompletableFuture<T> result = upstream.thenApplyAsync(value -> step.run(() -> work.apply(value)), executor);
+        steps.add(step);
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * Wait for all the steps, at most until the deadline
+     * @throws IllegalStateException reporting every step if a step failed or the deadline was exceeded
+     */
+    void await() {
+        try {
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw failure(format("did not complete within %d ms", timeoutMillis));
+        } catch (ExecutionException ex) {
+            throw failure("failed");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw failure("was interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Describe the outcome and the duration of every step
+     * @return the report, one line per step
+     */
+    String report() {
+        final StringBuilder report = new StringBuilder();
+        for (Step step : steps) {
+            report.append("\n\t- ").append(step.describe());
+        }
+        return report.toString();
+    }
+
+    private IllegalStateException failure(String reason) {
+        final IllegalStateException failure = new IllegalStateException(
+                format("The Azure configuration bootstrap %s:%s", reason, report()));
+        for (Step step : steps) {
+            if (step.failure != null) {
+                failure.addSuppressed(step.failure);
+            }
+        }
+        return failure;
+    }
+
+    private static class Step {
+        private final String name;
+        private volatile boolean started;
+        private volatile boolean ended;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile Throwable failure;
+
+        private Step(String name) {
+            this.name = name;
+        }
+
+        private <T> T run(Supplier<T> work) {
+            startNanos = System.nanoTime();
+            started = true;
+            RUNNING_STEP.set(true);
+            try {
+                return work.get();
+            } catch (RuntimeException | Error ex) {
+                failure = ex;
+                throw ex;
+            } finally {
+                RUNNING_STEP.remove();
+                endNanos = System.nanoTime();
+                ended = true;
+            }
+        }
+
+        private String describe() {
+            if (!started) {
+                return format("%s: not started", name);
+            } else if (!ended) {
+                return format("%s: still running after %d ms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            } else if (failure != null) {
+                return format("%s: failed after %d ms, %s", name, TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos), failure);
+            } else {
+                return format("%s: done in %d ms", name, TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos));
+            }
+        }
+    }
+}
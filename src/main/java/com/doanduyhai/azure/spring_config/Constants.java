@@ -20,6 +20,9 @@ public class Constants {
     public static final String AZURE_SPRING_KEY_VAULT = "springboot";
 
     public static final long DEFAULT_REFRESH_INTERVAL_MS = 1800000L;
+    public static final long DEFAULT_LOCAL_CACHE_MAX_STALENESS_MS = 86400000L;
+    public static final int DEFAULT_KEYVAULT_LOAD_PARALLELISM = 8;
+    public static final long DEFAULT_BOOTSTRAP_TIMEOUT_MS = 120000L;
 
     public static final String AZURE_TABLE_ENABLED_KEY = "azure.table.enabled";
     public static final String AZURE_KEYVAULT_ENABLED_KEY = "azure.keyvault.enabled";
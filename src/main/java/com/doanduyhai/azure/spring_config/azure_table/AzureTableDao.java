@@ -23,31 +23,69 @@ import static com.microsoft.azure.storage.table.TableQuery.generateFilterConditi
 import static java.lang.String.format;
 import static org.apache.commons.lang3.StringUtils.capitalize;
 
+import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.InvalidKeyException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.doanduyhai.azure.spring_config.utils.Validator;
 import com.microsoft.azure.storage.CloudStorageAccount;
 import com.microsoft.azure.storage.LocationMode;
 import com.microsoft.azure.storage.OperationContext;
+import com.microsoft.azure.storage.RequestResult;
+import com.microsoft.azure.storage.ResponseReceivedEvent;
 import com.microsoft.azure.storage.ResultContinuation;
 import com.microsoft.azure.storage.ResultSegment;
 import com.microsoft.azure.storage.RetryExponentialRetry;
+import com.microsoft.azure.storage.RetryingEvent;
+import com.microsoft.azure.storage.StorageEvent;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.table.CloudTable;
 import com.microsoft.azure.storage.table.CloudTableClient;
+import com.microsoft.azure.storage.table.DynamicTableEntity;
 import com.microsoft.azure.storage.table.EdmType;
+import com.microsoft.azure.storage.table.EntityResolver;
+import com.microsoft.azure.storage.table.TableBatchOperation;
 import com.microsoft.azure.storage.table.TableOperation;
 import com.microsoft.azure.storage.table.TablePayloadFormat;
 import com.microsoft.azure.storage.table.TableQuery;
@@ -63,6 +101,7 @@ import com.microsoft.azure.storage.table.TableServiceException;
  * <ul>
  *     <li>ddl(): create/drop table operations</li>
  *     <li>crud(): CRUD operations</li>
+ *     <li>async(): CRUD operations returning {@link CompletableFuture}</li>
  *     <li>partitionQuery(): query data by partition key. Filtering on row keys is possible</li>
  *     <li>filterQuery(): query data using filters.
  *      <br/>
@@ -77,25 +116,63 @@ public class AzureTableDao<T extends TableServiceEntity> {
     private static final String PARTITION_KEY = "PartitionKey";
     private static final String ROW_KEY = "RowKey";
     private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int DEFAULT_BATCH_PARALLELISM = 4;
+    private static final int DEFAULT_ASYNC_THREADS = 8;
+    private static final int DEFAULT_PREFETCH_DEPTH = 1;
+    private static final int DEFAULT_MAX_BUFFERED_ROWS = 10_000;
+    private static final int MAX_PARTITION_REREADS = 4;
+    private static final Logger LOG = LoggerFactory.getLogger(AzureTableDao.class);
     private final Class<T> entityClass;
     private final CloudTable cloudTable;
-    private final OperationContext opContext = new OperationContext();
     private final TableRequestOptions requestOptions = new TableRequestOptions();
+    private final List<OperationListener> operationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Only set when reading {@link DynamicTableEntity} without metadata.
+     * Reads that need to learn column types then use the full metadata request options
+     * and the other reads go through a {@link EdmTypeResolver.Session}
+     */
+    private final EdmTypeResolver typeResolver;
+    private final TableRequestOptions learningRequestOptions;
 
     public AzureTableDao(Class<T> entityClass, String storageConnectionString, String tableName)  {
+        this(entityClass, storageConnectionString, tableName, TablePayloadFormat.JsonFullMetadata);
+    }
+
+    /**
+     * Constructor.
+     * <br/>
+     * With {@link TablePayloadFormat#JsonNoMetadata}, the responses no longer carry the type of each column.
+     * For {@link DynamicTableEntity}, the first scan and the first read of each partition are then done with full metadata
+     * to learn the column types, see {@link EdmTypeResolver}. A read returning an unknown column or a value not matching
+     * its learnt type reads the mismatched partitions again with full metadata. Other entity classes are decoded using their Java property types
+     *
+     * @param entityClass             the entity class
+     * @param storageConnectionString the storage account connection string
+     * @param tableName               the table name
+     * @param payloadFormat           the payload format of the responses
+     */
+    public AzureTableDao(Class<T> entityClass, String storageConnectionString, String tableName, TablePayloadFormat payloadFormat)  {
+        Validator.validateNotNull(payloadFormat, "payloadFormat");
         this.entityClass = entityClass;
         try {
             CloudStorageAccount storageAccount = CloudStorageAccount.parse(storageConnectionString);
             CloudTableClient tableClient = storageAccount.createCloudTableClient();
             this.cloudTable = tableClient.getTableReference(tableName);
-//            if (log.isDebugEnabled() || log.isTraceEnabled()) {
-//                opContext.setLoggingEnabled(true);
-//                opContext.setLogger(log);
-//            }
             requestOptions.setLocationMode(LocationMode.PRIMARY_THEN_SECONDARY);
-            requestOptions.setTablePayloadFormat(TablePayloadFormat.JsonFullMetadata);
+            requestOptions.setTablePayloadFormat(payloadFormat);
             requestOptions.setRetryPolicyFactory(new RetryExponentialRetry());
 
+            if (payloadFormat == TablePayloadFormat.JsonNoMetadata && DynamicTableEntity.class.isAssignableFrom(entityClass)) {
+                this.typeResolver = new EdmTypeResolver();
+                this.learningRequestOptions = new TableRequestOptions(requestOptions);
+                learningRequestOptions.setTablePayloadFormat(TablePayloadFormat.JsonFullMetadata);
+            } else {
+                this.typeResolver = null;
+                this.learningRequestOptions = null;
+            }
+
         } catch (URISyntaxException|InvalidKeyException|StorageException  e) {
             throw new RuntimeException(format("Invalid connection string : '%s'", storageConnectionString), e);
         }
@@ -113,6 +190,27 @@ public class AzureTableDao<T extends TableServiceEntity> {
         return new DDL();
     }
 
+    /**
+     * Register a listener notified of every storage operation of this DAO, with its request-level diagnostics.
+     * <br/>
+     * Each operation uses its own {@link OperationContext}: listeners may customize it in
+     * {@link OperationListener#onOperationStarted(String, OperationContext)}, for example to enable
+     * the Azure SDK logging with <em>setLoggingEnabled(true)</em>
+     * @param listener the listener
+     */
+    public void addOperationListener(OperationListener listener) {
+        Validator.validateNotNull(listener, "listener");
+        operationListeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener
+     * @param listener the listener
+     */
+    public void removeOperationListener(OperationListener listener) {
+        operationListeners.remove(listener);
+    }
+
     /**
      * Return the CRUD API, which exposes the following operations:
      * <ul>
@@ -124,6 +222,8 @@ public class AzureTableDao<T extends TableServiceEntity> {
      *       <em>Note: this is implemented as a sequence of findById() followed by delete(T entity).
      *       Thus no transactional or atomicity is guaranteed </em>
      *     </li>
+     *     <li>insertOrReplaceAll(), insertOrMergeAll(), deleteAll(): apply the operation to many entities
+     *       using entity group transactions, grouped by PartitionKey</li>
      * </ul>
      * <br/>
      * Remark: The semantics of <em>replace()</em> and <em>merge()</em> is different but very little.
@@ -148,6 +248,28 @@ public class AzureTableDao<T extends TableServiceEntity> {
         return new CRUD();
     }
 
+    /**
+     * Return the asynchronous CRUD API, running on the default async executor: a bounded pool
+     * of daemon threads shared by all the DAOs
+     * @return Async CRUD API
+     */
+    public AsyncCRUD async() {
+        return new AsyncCRUD(defaultAsyncExecutor());
+    }
+
+    /**
+     * Return the asynchronous CRUD API, running on the given executor.
+     * <br/>
+     * The asynchronous versions of the queries are available with <em>listAsync(Executor)</em>
+     * on the PartitionQuery and FilterQuery APIs
+     * @param executor executor running the storage calls, should be bounded
+     * @return Async CRUD API
+     */
+    public AsyncCRUD async(Executor executor) {
+        Validator.validateNotNull(executor, "executor");
+        return new AsyncCRUD(executor);
+    }
+
     /**
      * Query the table by partition key. Optionally filters can be added on row keys:
      * <ul>
@@ -216,6 +338,40 @@ public class AzureTableDao<T extends TableServiceEntity> {
         return new FullScanQuery();
     }
 
+    /**
+     * Enumerate only the keys (PartitionKey, RowKey) of the table, page by page.
+     * <br/>
+     * The rows are neither fetched with their columns nor serialized as entities and
+     * the responses do not carry any OData metadata, which keeps the payload minimal
+     * <br/>
+     * <br/>
+     * <pre class="code"><code class="java">
+     *     List<String> partitionKeys = tableDao.keysQuery().listPartitionKeys();
+     * </code></pre>
+     * @return KeysQuery API
+     */
+    public KeysQuery keysQuery() {
+        return new KeysQuery();
+    }
+
+    /**
+     * Scan the table page by page, checkpointing the progress to a local file so that an interrupted
+     * scan can be resumed where it stopped instead of starting over
+     * <br/>
+     * <br/>
+     * <pre class="code"><code class="java">
+     *     long segments = tableDao.resumableScan(Paths.get("/var/lib/audit/config-scan.checkpoint"))
+     *          .checkpointInterval(10_000)
+     *          .run((segment, entities) -> audit(entities));
+     * </code></pre>
+     * @param checkpointFile file holding the progress of the scan
+     * @return ResumableScan API
+     */
+    public ResumableScan resumableScan(Path checkpointFile) {
+        Validator.validateNotNull(checkpointFile, "checkpointFile");
+        return new ResumableScan(checkpointFile);
+    }
+
     /**
      * DDL API, which exposes the following operations:
      * <ul>
@@ -231,7 +387,7 @@ public class AzureTableDao<T extends TableServiceEntity> {
          */
         public void createTableIfNotExists() {
             try {
-                cloudTable.createIfNotExists(requestOptions, opContext);
+                execute(OperationDiagnostics.CREATE_TABLE, context -> cloudTable.createIfNotExists(requestOptions, context));
             } catch (StorageException e) {
                 throw new RuntimeException(e);
             }
@@ -242,7 +398,7 @@ public class AzureTableDao<T extends TableServiceEntity> {
          */
         public void dropTableIfExists() {
             try {
-                cloudTable.deleteIfExists(requestOptions, opContext);
+                execute(OperationDiagnostics.DROP_TABLE, context -> cloudTable.deleteIfExists(requestOptions, context));
             } catch (StorageException e) {
                 throw new RuntimeException(e);
             }
@@ -261,6 +417,8 @@ public class AzureTableDao<T extends TableServiceEntity> {
      *       <em>Note: this is implemented as a sequence of findById() followed by delete(T entity).
      *       Thus no transactional or atomicity is guaranteed </em>
      *     </li>
+     *     <li>insertOrReplaceAll(), insertOrMergeAll(), deleteAll(): apply the operation to many entities
+     *       using entity group transactions, grouped by PartitionKey</li>
      * </ul>
      * <br/>
      * Remark: The semantics of <em>replace()</em> and <em>merge()</em> is different but very little.
@@ -296,7 +454,7 @@ public class AzureTableDao<T extends TableServiceEntity> {
          */
         public void insertOrReplace(T entity) {
             try {
-                cloudTable.execute(TableOperation.insertOrReplace(entity), requestOptions, opContext);
+                execute(OperationDiagnostics.INSERT_OR_REPLACE, context -> cloudTable.execute(TableOperation.insertOrReplace(entity), requestOptions, context));
             } catch (StorageException e) {
                 throw new RuntimeException(e);
             }
@@ -310,7 +468,7 @@ public class AzureTableDao<T extends TableServiceEntity> {
          */
         public void insertIfNotExists(T entity) {
             try {
-                cloudTable.execute(TableOperation.insert(entity), requestOptions, opContext);
+                execute(OperationDiagnostics.INSERT_IF_NOT_EXISTS, context -> cloudTable.execute(TableOperation.insert(entity), requestOptions, context));
             } catch (TableServiceException tableServiceException) {
                 if (tableServiceException.getErrorCode().equalsIgnoreCase("EntityAlreadyExists")) {
                     String errMsg = format("Entity with partition key '%s' and row key '%s' already exists",
@@ -339,7 +497,7 @@ public class AzureTableDao<T extends TableServiceEntity> {
          */
         public void insertOrMerge(T entity) {
             try {
-                cloudTable.execute(TableOperation.insertOrMerge(entity), requestOptions, opContext);
+                execute(OperationDiagnostics.INSERT_OR_MERGE, context -> cloudTable.execute(TableOperation.insertOrMerge(entity), requestOptions, context));
             } catch (StorageException e) {
                 throw new RuntimeException(e);
             }
@@ -353,7 +511,7 @@ public class AzureTableDao<T extends TableServiceEntity> {
          */
         public void atomicUpdate(T entity) {
             try {
-                cloudTable.execute(TableOperation.replace(entity), requestOptions, opContext);
+                execute(OperationDiagnostics.ATOMIC_UPDATE, context -> cloudTable.execute(TableOperation.replace(entity), requestOptions, context));
             } catch (StorageException e) {
                 throw new RuntimeException(e);
             }
@@ -368,7 +526,9 @@ public class AzureTableDao<T extends TableServiceEntity> {
         public T findById(String partitionKey, String rowKey) {
             try {
                 TableOperation findById = TableOperation.retrieve(partitionKey, rowKey, entityClass);
-                return (T)cloudTable.execute(findById, requestOptions, opContext).getResultAsType();
+                return read(partitionKey, null,
+                        readOptions -> (T) execute(OperationDiagnostics.FIND_BY_ID, context -> cloudTable.execute(findById, readOptions, context)).getResultAsType(),
+                        Collections::singletonList);
             } catch (StorageException e) {
                 throw new RuntimeException(e);
             }
@@ -386,7 +546,7 @@ public class AzureTableDao<T extends TableServiceEntity> {
             try {
                 T found = findById(partitionKey, rowKey);
                 if (found != null) {
-                    cloudTable.execute(TableOperation.delete(found), requestOptions, opContext);
+                    execute(OperationDiagnostics.DELETE, context -> cloudTable.execute(TableOperation.delete(found), requestOptions, context));
                 } else {
                     //No op
                 }
@@ -401,7 +561,7 @@ public class AzureTableDao<T extends TableServiceEntity> {
          */
         public void delete(T entity) {
             try {
-                cloudTable.execute(TableOperation.delete(entity), requestOptions, opContext);
+                execute(OperationDiagnostics.DELETE, context -> cloudTable.execute(TableOperation.delete(entity), requestOptions, context));
             } catch (StorageException e) {
                 throw new RuntimeException(e);
             }
@@ -415,6 +575,236 @@ public class AzureTableDao<T extends TableServiceEntity> {
             TableQuery<T> query = TableQuery.from(entityClass).take(DEFAULT_LIMIT);
             return new QueryResultIterable(query);
         }
+
+        /**
+         * Stream all entities, prefetching the next result page while the current one is consumed.
+         * See {@link PrefetchingSpliterator}
+         * @return entities
+         */
+        public Stream<T> streamAll() {
+            TableQuery<T> query = TableQuery.from(entityClass).take(DEFAULT_LIMIT);
+            return new PrefetchingSpliterator(OperationDiagnostics.QUERY_PAGE, query,
+                    DEFAULT_PREFETCH_DEPTH, DEFAULT_MAX_BUFFERED_ROWS, defaultAsyncExecutor()).stream();
+        }
+
+        /**
+         * Insert or replace all the given entities using entity group transactions.
+         * See {@link #batch(BatchOperationType, Collection, int)}
+         * @param entities the entities to be inserted or replaced
+         * @return the batch result
+         */
+        public BatchResult<T> insertOrReplaceAll(Collection<T> entities) {
+            return batch(BatchOperationType.INSERT_OR_REPLACE, entities, DEFAULT_BATCH_PARALLELISM);
+        }
+
+        /**
+         * Insert or merge all the given entities using entity group transactions.
+         * See {@link #batch(BatchOperationType, Collection, int)}
+         * @param entities the entities to be inserted or merged
+         * @return the batch result
+         */
+        public BatchResult<T> insertOrMergeAll(Collection<T> entities) {
+            return batch(BatchOperationType.INSERT_OR_MERGE, entities, DEFAULT_BATCH_PARALLELISM);
+        }
+
+        /**
+         * Delete all the given existing entities using entity group transactions.
+         * See {@link #batch(BatchOperationType, Collection, int)}
+         * @param entities the existing entities to be deleted
+         * @return the batch result
+         */
+        public BatchResult<T> deleteAll(Collection<T> entities) {
+            return batch(BatchOperationType.DELETE, entities, DEFAULT_BATCH_PARALLELISM);
+        }
+
+        /**
+         * Apply the same operation to all the given entities using entity group transactions
+         * <br/>
+         * <br/>
+         * The entities are grouped by PartitionKey then split into batches of at most {@value #MAX_BATCH_SIZE}
+         * operations, the maximum allowed by Azure Storage Table. The batches of a partition are sent sequentially
+         * and the partitions are processed concurrently, at most <em>parallelism</em> at a time
+         * <br/>
+         * <br/>
+         * <strong>An entity group transaction is atomic: if one operation fails, none of the operations of
+         * its batch is applied</strong>. All the entities of a failed batch are thus reported as failed in the
+         * returned {@link BatchResult}, with the exception of their batch. Other batches are not impacted
+         * @param operationType the operation to apply
+         * @param entities the entities
+         * @param parallelism the number of partitions processed concurrently
+         * @return the batch result
+         */
+        public BatchResult<T> batch(BatchOperationType operationType, Collection<T> entities, int parallelism) {
+            Validator.validateNotNull(operationType, "operationType");
+            Validator.validateNotNull(entities, "entities");
+            Validator.validateTrue(parallelism > 0, "The provided parallelism should be strictly positive");
+
+            Map<String, List<T>> entitiesByPartition = entities
+                    .stream()
+                    .collect(Collectors.groupingBy(TableServiceEntity::getPartitionKey, LinkedHashMap::new, Collectors.toList()));
+            BatchResult<T> batchResult = new BatchResult<>();
+            if (entitiesByPartition.isEmpty()) {
+                return batchResult;
+            }
+
+            ExecutorService batchExecutor = newExecutor("azure-table-batch-", Math.min(parallelism, entitiesByPartition.size()));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (List<T> partitionEntities : entitiesByPartition.values()) {
+                    futures.add(batchExecutor.submit(() -> executePartitionBatches(operationType, partitionEntities, batchResult)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                return batchResult;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while executing batches", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                batchExecutor.shutdownNow();
+            }
+        }
+
+        private void executePartitionBatches(BatchOperationType operationType, List<T> partitionEntities, BatchResult<T> batchResult) {
+            for (int start = 0; start < partitionEntities.size(); start += MAX_BATCH_SIZE) {
+                List<T> chunk = partitionEntities.subList(start, Math.min(start + MAX_BATCH_SIZE, partitionEntities.size()));
+                TableBatchOperation batchOperation = new TableBatchOperation();
+                for (T entity : chunk) {
+                    switch (operationType) {
+                        case INSERT:
+                            batchOperation.insert(entity);
+                            break;
+                        case REPLACE:
+                            batchOperation.replace(entity);
+                            break;
+                        case INSERT_OR_REPLACE:
+                            batchOperation.insertOrReplace(entity);
+                            break;
+                        case INSERT_OR_MERGE:
+                            batchOperation.insertOrMerge(entity);
+                            break;
+                        case DELETE:
+                            batchOperation.delete(entity);
+                            break;
+                        default:
+                            throw new IllegalArgumentException(format("Unknown batch operation type '%s'", operationType));
+                    }
+                }
+                try {
+                    execute(OperationDiagnostics.BATCH, context -> cloudTable.execute(batchOperation, requestOptions, context));
+                    batchResult.addSucceeded(chunk);
+                } catch (StorageException | RuntimeException e) {
+                    batchResult.addFailed(chunk, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Asynchronous version of the CRUD API. Each operation runs on the executor and
+     * its result, or its exception, is available through the returned {@link CompletableFuture}
+     */
+    public class AsyncCRUD {
+        private final Executor executor;
+        private final CRUD crud = new CRUD();
+
+        public AsyncCRUD(Executor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * See {@link CRUD#insertOrReplace(TableServiceEntity)}
+         */
+        public CompletableFuture<Void> insertOrReplace(T entity) {
+            return CompletableFuture.runAsync(() -> crud.insertOrReplace(entity), executor);
+        }
+
+        /**
+         * See {@link CRUD#insertIfNotExists(TableServiceEntity)}
+         */
+        public CompletableFuture<Void> insertIfNotExists(T entity) {
+            return CompletableFuture.runAsync(() -> crud.insertIfNotExists(entity), executor);
+        }
+
+        /**
+         * See {@link CRUD#insertOrMerge(TableServiceEntity)}
+         */
+        public CompletableFuture<Void> insertOrMerge(T entity) {
+            return CompletableFuture.runAsync(() -> crud.insertOrMerge(entity), executor);
+        }
+
+        /**
+         * See {@link CRUD#atomicUpdate(TableServiceEntity)}
+         */
+        public CompletableFuture<Void> atomicUpdate(T entity) {
+            return CompletableFuture.runAsync(() -> crud.atomicUpdate(entity), executor);
+        }
+
+        /**
+         * See {@link CRUD#findById(String, String)}
+         * @return the found entity or null
+         */
+        public CompletableFuture<T> findById(String partitionKey, String rowKey) {
+            return CompletableFuture.supplyAsync(() -> crud.findById(partitionKey, rowKey), executor);
+        }
+
+        /**
+         * See {@link CRUD#deleteById(String, String)}
+         */
+        public CompletableFuture<Void> deleteById(String partitionKey, String rowKey) {
+            return CompletableFuture.runAsync(() -> crud.deleteById(partitionKey, rowKey), executor);
+        }
+
+        /**
+         * See {@link CRUD#delete(TableServiceEntity)}
+         */
+        public CompletableFuture<Void> delete(T entity) {
+            return CompletableFuture.runAsync(() -> crud.delete(entity), executor);
+        }
+    }
+
+    /**
+     * Operations supported by {@link CRUD#batch(BatchOperationType, Collection, int)}.
+     * <em>REPLACE</em> and <em>DELETE</em> are conditional on the ETag of the entity, use <strong>*</strong> to force them
+     */
+    public enum BatchOperationType {
+        INSERT,
+        REPLACE,
+        INSERT_OR_REPLACE,
+        INSERT_OR_MERGE,
+        DELETE
+    }
+
+    /**
+     * Result of {@link CRUD#batch(BatchOperationType, Collection, int)}: the entities successfully
+     * written and, for each failed entity, the exception of its batch
+     * @param <E> entity type
+     */
+    public static class BatchResult<E> {
+        private final List<E> succeeded = new ArrayList<>();
+        private final List<Pair<E, Exception>> failures = new ArrayList<>();
+
+        synchronized void addSucceeded(List<E> entities) {
+            succeeded.addAll(entities);
+        }
+
+        synchronized void addFailed(List<E> entities, Exception exception) {
+            entities.forEach(entity -> failures.add(Pair.of(entity, exception)));
+        }
+
+        public synchronized List<E> getSucceeded() {
+            return new ArrayList<>(succeeded);
+        }
+
+        public synchronized List<Pair<E, Exception>> getFailures() {
+            return new ArrayList<>(failures);
+        }
+
+        public synchronized boolean isSuccess() {
+            return failures.isEmpty();
+        }
     }
 
     /**
@@ -432,11 +822,13 @@ public class AzureTableDao<T extends TableServiceEntity> {
      * are <strong>always fetched</strong> no matter the values you set in <em>select(String ... columns)</em>
      */
     public class PartitionQuery {
+        private final String partitionKey;
         private final String partitionFilter;
         private int limit = DEFAULT_LIMIT;
         private String[] columnsToFetch = new String[0];
 
         public PartitionQuery(String partitionKey) {
+            this.partitionKey = partitionKey;
             this.partitionFilter = generateFilterCondition(PARTITION_KEY, EQUAL, partitionKey);
         }
 
@@ -488,7 +880,24 @@ public class AzureTableDao<T extends TableServiceEntity> {
         public List<T> list(){
             TableQuery<T> partitionScanQuery = TableQuery.from(entityClass).where(this.partitionFilter)
                     .take(limit);
-            return getResults(applySelect(partitionScanQuery, columnsToFetch));
+            return getResults(OperationDiagnostics.PARTITION_QUERY, applySelect(partitionScanQuery, columnsToFetch), partitionKey);
+        }
+
+        /**
+         * Asynchronous version of <em>list()</em>, executed on the default async executor
+         * @return
+         */
+        public CompletableFuture<List<T>> listAsync() {
+            return listAsync(defaultAsyncExecutor());
+        }
+
+        /**
+         * Asynchronous version of <em>list()</em>, executed on the given executor
+         * @param executor executor running the query
+         * @return
+         */
+        public CompletableFuture<List<T>> listAsync(Executor executor) {
+            return CompletableFuture.supplyAsync(this::list, executor);
         }
 
         /**
@@ -571,7 +980,24 @@ public class AzureTableDao<T extends TableServiceEntity> {
                                 Operators.AND,
                                 generateFilterCondition(ROW_KEY, relation, fromRowKey)))
                         .take(limit);
-                return getResults(applySelect(rangeQuery, columnsToFetch));
+                return getResults(OperationDiagnostics.PARTITION_QUERY, applySelect(rangeQuery, columnsToFetch), PartitionQuery.this.partitionKey);
+            }
+
+            /**
+             * Asynchronous version of <em>list()</em>, executed on the default async executor
+             * @return
+             */
+            public CompletableFuture<List<T>> listAsync() {
+                return listAsync(defaultAsyncExecutor());
+            }
+
+            /**
+             * Asynchronous version of <em>list()</em>, executed on the given executor
+             * @param executor executor running the query
+             * @return
+             */
+            public CompletableFuture<List<T>> listAsync(Executor executor) {
+                return CompletableFuture.supplyAsync(this::list, executor);
             }
         }
 
@@ -627,7 +1053,24 @@ public class AzureTableDao<T extends TableServiceEntity> {
                                 Operators.AND,
                                 generateFilterCondition(ROW_KEY, relation, toRowKey)))
                         .take(limit);
-                return getResults(applySelect(rangeQuery, columnsToFetch));
+                return getResults(OperationDiagnostics.PARTITION_QUERY, applySelect(rangeQuery, columnsToFetch), PartitionQuery.this.partitionKey);
+            }
+
+            /**
+             * Asynchronous version of <em>list()</em>, executed on the default async executor
+             * @return
+             */
+            public CompletableFuture<List<T>> listAsync() {
+                return listAsync(defaultAsyncExecutor());
+            }
+
+            /**
+             * Asynchronous version of <em>list()</em>, executed on the given executor
+             * @param executor executor running the query
+             * @return
+             */
+            public CompletableFuture<List<T>> listAsync(Executor executor) {
+                return CompletableFuture.supplyAsync(this::list, executor);
             }
         }
 
@@ -690,7 +1133,24 @@ public class AzureTableDao<T extends TableServiceEntity> {
                                         Operators.AND,
                                         generateFilterCondition(ROW_KEY, toRelation, toRowKey))))
                         .take(limit);
-                return getResults(applySelect(rangeQuery, columnsToFetch));
+                return getResults(OperationDiagnostics.PARTITION_QUERY, applySelect(rangeQuery, columnsToFetch), PartitionQuery.this.partitionKey);
+            }
+
+            /**
+             * Asynchronous version of <em>list()</em>, executed on the default async executor
+             * @return
+             */
+            public CompletableFuture<List<T>> listAsync() {
+                return listAsync(defaultAsyncExecutor());
+            }
+
+            /**
+             * Asynchronous version of <em>list()</em>, executed on the given executor
+             * @param executor executor running the query
+             * @return
+             */
+            public CompletableFuture<List<T>> listAsync(Executor executor) {
+                return CompletableFuture.supplyAsync(this::list, executor);
             }
         }
     }
@@ -707,6 +1167,8 @@ public class AzureTableDao<T extends TableServiceEntity> {
 
         private int limit = DEFAULT_LIMIT;
         private String[] columnsToFetch = new String[0];
+        private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+        private int maxBufferedRows = DEFAULT_MAX_BUFFERED_ROWS;
         public FilterQuery(List<GenericFilter> filters) {
             this.filters = filters;
         }
@@ -764,7 +1226,82 @@ public class AzureTableDao<T extends TableServiceEntity> {
             TableQuery<T> query = TableQuery.from(entityClass)
                     .where(filtersExpression)
                     .take(limit);
-            return getResults(applySelect(query, columnsToFetch));
+            return getResults(OperationDiagnostics.FILTER_QUERY, applySelect(query, columnsToFetch));
+        }
+
+        /**
+         * Asynchronous version of <em>list()</em>, executed on the default async executor
+         * @return
+         */
+        public CompletableFuture<List<T>> listAsync() {
+            return listAsync(defaultAsyncExecutor());
+        }
+
+        /**
+         * Asynchronous version of <em>list()</em>, executed on the given executor
+         * @param executor executor running the query
+         * @return
+         */
+        public CompletableFuture<List<T>> listAsync(Executor executor) {
+            return CompletableFuture.supplyAsync(this::list, executor);
+        }
+
+        /**
+         * Return all the matching rows, fetching the result pages transparently.
+         * The <em>limit</em> is used as page size
+         * @return
+         */
+        public Iterable<T> listAll() {
+            String filtersExpression = filters
+                    .stream()
+                    .map(GenericFilter::filter)
+                    .collect(Collectors.joining(" and "));
+            TableQuery<T> query = TableQuery.from(entityClass)
+                    .where(filtersExpression)
+                    .take(limit);
+            return new QueryResultIterable(OperationDiagnostics.FILTER_QUERY, applySelect(query, columnsToFetch));
+        }
+
+        /**
+         * Set the number of result pages fetched ahead by <em>stream()</em>. 0 disables the prefetch
+         * @param prefetchDepth number of pages fetched ahead
+         * @return
+         */
+        public FilterQuery prefetchDepth(int prefetchDepth) {
+            Validator.validateTrue(prefetchDepth >= 0, "The provided prefetchDepth should be positive");
+            this.prefetchDepth = prefetchDepth;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of rows fetched ahead by <em>stream()</em>.
+         * The prefetch depth is lowered if needed so that <em>prefetchDepth * limit</em> stays below this bound
+         * @param maxBufferedRows maximum number of rows fetched ahead
+         * @return
+         */
+        public FilterQuery maxBufferedRows(int maxBufferedRows) {
+            Validator.validateTrue(maxBufferedRows > 0, "The provided maxBufferedRows should be strictly positive");
+            this.maxBufferedRows = maxBufferedRows;
+            return this;
+        }
+
+        /**
+         * Stream all the matching rows, prefetching the next result pages while the current one is consumed.
+         * The <em>limit</em> is used as page size.
+         * <br/>
+         * <strong>The stream should be closed if it is not fully consumed, to cancel the pending prefetch</strong>
+         * @return
+         */
+        public Stream<T> stream() {
+            String filtersExpression = filters
+                    .stream()
+                    .map(GenericFilter::filter)
+                    .collect(Collectors.joining(" and "));
+            TableQuery<T> query = TableQuery.from(entityClass)
+                    .where(filtersExpression)
+                    .take(limit);
+            return new PrefetchingSpliterator(OperationDiagnostics.FILTER_QUERY, applySelect(query, columnsToFetch),
+                    prefetchDepth, maxBufferedRows, defaultAsyncExecutor()).stream();
         }
 
     }
@@ -777,6 +1314,11 @@ public class AzureTableDao<T extends TableServiceEntity> {
     public class FullScanQuery {
         private int pageSize = DEFAULT_LIMIT;
         private String[] columnsToFetch = new String[0];
+        private int parallelism = 1;
+        private String[] splitPoints = null;
+        private ExecutorService executor = null;
+        private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+        private int maxBufferedRows = DEFAULT_MAX_BUFFERED_ROWS;
 
         /**
          * Set the number of rows to be returned <strong>for each page</strong>
@@ -852,9 +1394,184 @@ public class AzureTableDao<T extends TableServiceEntity> {
             return getResultsWithToken(applySelect(query, columnsToFetch), continuationToken);
         }
 
+        /**
+         * Scan the table with <em>parallelism</em> concurrent queries, each one covering
+         * a lexicographic range of the PartitionKey space
+         * <br/>
+         * <br/>
+         * Unless explicit split points are provided with <em>splitPoints(String ... splitPoints)</em>,
+         * the ranges are computed by splitting evenly the lower case letters <em>a</em> to <em>z</em>
+         * on the first character of the PartitionKey. The first and last ranges are open-ended
+         * so that all the rows are always scanned
+         * @param parallelism number of ranges scanned concurrently
+         * @return
+         */
+        public FullScanQuery parallelism(int parallelism) {
+            Validator.validateTrue(parallelism > 0, "The provided parallelism should be strictly positive");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Define explicitly the PartitionKey boundaries of the ranges to be scanned concurrently.
+         * <em>n</em> split points define <em>n + 1</em> ranges
+         * @param splitPoints sorted PartitionKey boundaries
+         * @return
+         */
+        public FullScanQuery splitPoints(String ... splitPoints) {
+            Validator.validateTrue(splitPoints.length > 0, "You should provide at least one split point");
+            String[] sorted = splitPoints.clone();
+            Arrays.sort(sorted);
+            Validator.validateTrue(Arrays.equals(sorted, splitPoints), "The provided split points should be sorted");
+            this.splitPoints = splitPoints;
+            this.parallelism = splitPoints.length + 1;
+            return this;
+        }
+
+        /**
+         * Define the executor running the range queries. If none is provided,
+         * a bounded thread pool of <em>parallelism</em> threads is created for the scan
+         * and shut down afterwards
+         * @param executor executor running the range queries
+         * @return
+         */
+        public FullScanQuery executor(ExecutorService executor) {
+            Validator.validateNotNull(executor, "executor");
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Return all the rows of the table and serialized them as entities,
+         * scanning the PartitionKey ranges concurrently if <em>parallelism</em> &gt; 1.
+         * The rows are returned ordered by ranges
+         * @return
+         */
+        public List<T> listAll() {
+            List<String> rangeFilters = rangeFilters();
+            if (rangeFilters.size() == 1) {
+                return scanRange(rangeFilters.get(0));
+            }
+
+            ExecutorService rangeExecutor = executor != null ? executor : newExecutor("azure-table-scan-", rangeFilters.size());
+            try {
+                List<Future<List<T>>> futures = new ArrayList<>();
+                for (String rangeFilter : rangeFilters) {
+                    futures.add(rangeExecutor.submit(() -> scanRange(rangeFilter)));
+                }
+                List<T> results = new ArrayList<>();
+                for (Future<List<T>> future : futures) {
+                    results.addAll(future.get());
+                }
+                return results;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while scanning the table", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            } finally {
+                if (executor == null) {
+                    rangeExecutor.shutdownNow();
+                }
+            }
+        }
+
+        /**
+         * Set the number of result pages fetched ahead by <em>stream()</em>. 0 disables the prefetch
+         * @param prefetchDepth number of pages fetched ahead
+         * @return
+         */
+        public FullScanQuery prefetchDepth(int prefetchDepth) {
+            Validator.validateTrue(prefetchDepth >= 0, "The provided prefetchDepth should be positive");
+            this.prefetchDepth = prefetchDepth;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of rows fetched ahead by <em>stream()</em>.
+         * The prefetch depth is lowered if needed so that <em>prefetchDepth * pageSize</em> stays below this bound
+         * @param maxBufferedRows maximum number of rows fetched ahead
+         * @return
+         */
+        public FullScanQuery maxBufferedRows(int maxBufferedRows) {
+            Validator.validateTrue(maxBufferedRows > 0, "The provided maxBufferedRows should be strictly positive");
+            this.maxBufferedRows = maxBufferedRows;
+            return this;
+        }
+
+        /**
+         * Stream all the rows of the table, prefetching the next result pages while the current one is consumed.
+         * Unlike <em>listAll()</em>, the table is scanned sequentially and <em>parallelism</em> is ignored.
+         * The pages are fetched on the <em>executor</em> if provided, on the default async executor otherwise
+         * <br/>
+         * <strong>The stream should be closed if it is not fully consumed, to cancel the pending prefetch</strong>
+         * @return
+         */
+        public Stream<T> stream() {
+            TableQuery<T> query = TableQuery.from(entityClass).take(pageSize);
+            return new PrefetchingSpliterator(OperationDiagnostics.FULL_SCAN_PAGE, applySelect(query, columnsToFetch),
+                    prefetchDepth, maxBufferedRows, executor != null ? executor : defaultAsyncExecutor()).stream();
+        }
+
+        private List<String> rangeFilters() {
+            String[] boundaries = splitPoints;
+            if (boundaries == null) {
+                boundaries = new String[parallelism - 1];
+                for (int i = 1; i < parallelism; i++) {
+                    boundaries[i - 1] = String.valueOf((char) ('a' + (i * 26) / parallelism));
+                }
+            }
+
+            List<String> rangeFilters = new ArrayList<>();
+            if (boundaries.length == 0) {
+                rangeFilters.add(null);
+                return rangeFilters;
+            }
+            rangeFilters.add(generateFilterCondition(PARTITION_KEY, LESS_THAN, boundaries[0]));
+            for (int i = 1; i < boundaries.length; i++) {
+                rangeFilters.add(combineFilters(
+                        generateFilterCondition(PARTITION_KEY, GREATER_THAN_OR_EQUAL, boundaries[i - 1]),
+                        Operators.AND,
+                        generateFilterCondition(PARTITION_KEY, LESS_THAN, boundaries[i])));
+            }
+            rangeFilters.add(generateFilterCondition(PARTITION_KEY, GREATER_THAN_OR_EQUAL, boundaries[boundaries.length - 1]));
+            return rangeFilters;
+        }
+
+        private List<T> scanRange(String rangeFilter) {
+            TableQuery<T> query = TableQuery.from(entityClass).take(pageSize);
+            if (rangeFilter != null) {
+                query = query.where(rangeFilter);
+            }
+            TableQuery<T> rangeQuery = applySelect(query, columnsToFetch);
+
+            List<T> results = new ArrayList<>();
+            ResultContinuation continuationToken = null;
+            try {
+                do {
+                    ResultContinuation pageToken = continuationToken;
+                    ResultSegment<T> resultSegment = read(null, rangeQuery,
+                            readOptions -> execute(OperationDiagnostics.FULL_SCAN_PAGE,
+                                    context -> cloudTable.executeSegmented(rangeQuery, pageToken, readOptions, context)),
+                            ResultSegment::getResults);
+                    results.addAll(resultSegment.getResults());
+                    continuationToken = resultSegment.getContinuationToken();
+                } while (continuationToken != null);
+            } catch (StorageException e) {
+                throw new RuntimeException(e);
+            }
+            return results;
+        }
+
         private Pair<List<T>,ResultContinuation> getResultsWithToken(TableQuery<T> rangeQuery, ResultContinuation continuationToken){
             try {
-                ResultSegment<T> resultSegment = cloudTable.executeSegmented(rangeQuery, continuationToken, requestOptions, opContext);
+                ResultSegment<T> resultSegment = read(null, rangeQuery,
+                        readOptions -> execute(OperationDiagnostics.FULL_SCAN_PAGE,
+                                context -> cloudTable.executeSegmented(rangeQuery, continuationToken, readOptions, context)),
+                        ResultSegment::getResults);
                 return Pair.of(resultSegment.getResults(), resultSegment.getContinuationToken());
 
             } catch (StorageException e) {
@@ -863,6 +1580,243 @@ public class AzureTableDao<T extends TableServiceEntity> {
         }
     }
 
+    /**
+     * API to scan the table page by page with checkpoints.
+     * <br/>
+     * <br/>
+     * After each page (segment) is handled, the number of the next segment and its serialized
+     * {@link ResultContinuation} are written to the checkpoint file, at most once per <em>checkpointInterval</em>.
+     * If the checkpoint file exists when the scan starts, the scan resumes from it. The checkpoint file is deleted
+     * once the whole table has been scanned, so the next run starts from the beginning.
+     * <br/>
+     * <br/>
+     * With the default interval of 0, the checkpoint is saved after every segment and a segment is handed twice
+     * to the handler only if the process stops between the end of the handler and the checkpoint write.
+     * With a longer interval, the segments handled since the last checkpoint are handed again on resume.
+     * The segment number is stable across resumes, so the handler can use it to skip the segments it has already processed
+     * <br/>
+     * <strong>WARNING: like the full scan query, the scan reads the whole table !!</strong>
+     */
+    public class ResumableScan {
+        private final Path checkpointFile;
+        private int pageSize = DEFAULT_LIMIT;
+        private String[] columnsToFetch = new String[0];
+        private List<GenericFilter> filters = new ArrayList<>();
+        private long checkpointIntervalMillis = 0;
+
+        public ResumableScan(Path checkpointFile) {
+            this.checkpointFile = checkpointFile;
+        }
+
+        /**
+         * Set the number of rows of each segment
+         * @param pageSize number of rows per segment
+         * @return
+         */
+        public ResumableScan pageSize(int pageSize) {
+            Validator.validateTrue(pageSize > 0, "The provided pageSize should be strictly positive");
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Define the CAPITALIZED columns to be fetched, see {@link FullScanQuery#select(String...)}
+         * @param columns CAPITALIZED columns to be fetched
+         * @return
+         */
+        public ResumableScan select(String ... columns) {
+            validateSelectColumns(columns);
+            this.columnsToFetch = columns;
+            return this;
+        }
+
+        /**
+         * Only scan the rows matching the given filters, combined using an <strong>AND</strong> logic
+         * @param filters the filters
+         * @return
+         */
+        public ResumableScan where(GenericFilter... filters) {
+            this.filters = Arrays.asList(filters);
+            return this;
+        }
+
+        /**
+         * Set the minimum delay between two checkpoints. 0 saves a checkpoint after every segment
+         * @param checkpointIntervalMillis delay in milliseconds
+         * @return
+         */
+        public ResumableScan checkpointInterval(long checkpointIntervalMillis) {
+            Validator.validateTrue(checkpointIntervalMillis >= 0, "The provided checkpointInterval should be positive");
+            this.checkpointIntervalMillis = checkpointIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Run the scan, resuming from the checkpoint file if it exists
+         * @param segmentHandler handler receiving the segment number and its entities
+         * @return the total number of segments of the scan, including the ones handled before resuming
+         */
+        public long run(BiConsumer<Long, List<T>> segmentHandler) {
+            TableQuery<T> query = TableQuery.from(entityClass).take(pageSize);
+            if (!filters.isEmpty()) {
+                query = query.where(filters
+                        .stream()
+                        .map(GenericFilter::filter)
+                        .collect(Collectors.joining(" and ")));
+            }
+            TableQuery<T> scanQuery = applySelect(query, columnsToFetch);
+            String fingerprint = format("%s|%s|%d|%s", cloudTable.getName(), scanQuery.getFilterString(),
+                    pageSize, String.join(",", columnsToFetch));
+
+            long segment = 0;
+            ResultContinuation continuationToken = null;
+            ScanCheckpoint checkpoint = ScanCheckpoint.load(checkpointFile);
+            if (checkpoint != null) {
+                Validator.validateTrue(fingerprint.equals(checkpoint.getFingerprint()),
+                        format("The checkpoint '%s' belongs to another scan: %s", checkpointFile, checkpoint.getFingerprint()));
+                segment = checkpoint.getNextSegment();
+                continuationToken = checkpoint.getContinuationToken();
+                LOG.info("Resuming the scan of table {} at segment {}", cloudTable.getName(), segment);
+            }
+
+            long lastCheckpoint = System.nanoTime();
+            do {
+                ResultSegment<T> resultSegment = fetchSegment(OperationDiagnostics.FULL_SCAN_PAGE, scanQuery, continuationToken);
+                segmentHandler.accept(segment, resultSegment.getResults());
+                segment++;
+                continuationToken = resultSegment.getContinuationToken();
+                if (continuationToken != null
+                        && System.nanoTime() - lastCheckpoint >= checkpointIntervalMillis * 1_000_000) {
+                    new ScanCheckpoint(fingerprint, segment, continuationToken).save(checkpointFile);
+                    lastCheckpoint = System.nanoTime();
+                }
+            } while (continuationToken != null);
+
+            try {
+                Files.deleteIfExists(checkpointFile);
+            } catch (IOException ex) {
+                throw new RuntimeException(format("Cannot delete the scan checkpoint '%s'", checkpointFile), ex);
+            }
+            return segment;
+        }
+    }
+
+    private static Executor defaultAsyncExecutor() {
+        return DefaultAsyncExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Lazy holder of the default async executor, only created on first use
+     */
+    private static class DefaultAsyncExecutorHolder {
+        private static final ExecutorService EXECUTOR = newExecutor("azure-table-async-",
+                Math.max(DEFAULT_ASYNC_THREADS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static ExecutorService newExecutor(String threadPrefix, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * API to enumerate the keys of the table.
+     * <br/>
+     * If filters are provided, they are combined using an <strong>AND</strong> logic
+     * <br/>
+     * <strong>WARNING: enumerating the keys still implies a FULL TABLE SCAN !!</strong>
+     */
+    public class KeysQuery {
+        private int pageSize = DEFAULT_LIMIT;
+        private List<GenericFilter> filters = new ArrayList<>();
+
+        /**
+         * Set the number of keys to be returned <strong>for each page</strong>
+         * @param pageSize number of keys to be returned
+         * @return
+         */
+        public KeysQuery pageSize(int pageSize) {
+            Validator.validateTrue(pageSize > 0, "The provided pageSize should be strictly positive");
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Only enumerate the keys of the rows matching the filters
+         * @param filters the filters to apply on columns
+         * @return
+         */
+        public KeysQuery where(GenericFilter... filters) {
+            Validator.validateTrue(filters.length > 0, "Please provide at least one filter");
+            this.filters = Arrays.asList(filters);
+            return this;
+        }
+
+        /**
+         * Return the distinct partition keys, in table order
+         * @return
+         */
+        public List<String> listPartitionKeys() {
+            List<String> partitionKeys = new ArrayList<>();
+            // Rows are returned sorted by PartitionKey, so duplicates are always consecutive
+            forEachKey((partitionKey, rowKey) -> {
+                if (partitionKeys.isEmpty() || !partitionKeys.get(partitionKeys.size() - 1).equals(partitionKey)) {
+                    partitionKeys.add(partitionKey);
+                }
+            });
+            return partitionKeys;
+        }
+
+        /**
+         * Return the keys of all rows as pairs (PartitionKey, RowKey), in table order
+         * @return
+         */
+        public List<Pair<String, String>> listKeys() {
+            List<Pair<String, String>> keys = new ArrayList<>();
+            forEachKey((partitionKey, rowKey) -> keys.add(Pair.of(partitionKey, rowKey)));
+            return keys;
+        }
+
+        /**
+         * Stream the keys of all rows to the given consumer, in table order
+         * @param keyConsumer consumer of (PartitionKey, RowKey)
+         */
+        public void forEachKey(BiConsumer<String, String> keyConsumer) {
+            TableQuery<T> keysQuery = TableQuery.from(entityClass)
+                    .select(new String[]{PARTITION_KEY, ROW_KEY})
+                    .take(pageSize);
+            if (!filters.isEmpty()) {
+                keysQuery = keysQuery.where(filters
+                        .stream()
+                        .map(GenericFilter::filter)
+                        .collect(Collectors.joining(" and ")));
+            }
+
+            EntityResolver<Void> keyResolver = (partitionKey, rowKey, timestamp, properties, etag) -> {
+                keyConsumer.accept(partitionKey, rowKey);
+                return null;
+            };
+            TableRequestOptions keysRequestOptions = new TableRequestOptions(requestOptions);
+            keysRequestOptions.setTablePayloadFormat(TablePayloadFormat.JsonNoMetadata);
+            TableQuery<T> query = keysQuery;
+
+            ResultContinuation continuationToken = null;
+            try {
+                do {
+                    ResultContinuation pageToken = continuationToken;
+                    continuationToken = execute(OperationDiagnostics.KEYS_PAGE,
+                            context -> cloudTable.executeSegmented(query, keyResolver, pageToken, keysRequestOptions, context))
+                            .getContinuationToken();
+                } while (continuationToken != null);
+            } catch (StorageException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
 
     /**
      * API to full scan the table by pages transparently as a ResultSet
@@ -871,15 +1825,21 @@ public class AzureTableDao<T extends TableServiceEntity> {
      * <strong>WARNING: full scanning the table can be very slow !!</strong>
      */
     public class QueryResultIterable implements Iterable<T> {
+        private final String operation;
         private final TableQuery<T> query;
 
         public QueryResultIterable(TableQuery<T> query) {
+            this(OperationDiagnostics.QUERY_PAGE, query);
+        }
+
+        public QueryResultIterable(String operation, TableQuery<T> query) {
+            this.operation = operation;
             this.query = query;
         }
 
         @Override
         public Iterator<T> iterator() {
-            return new QueryResultIterator(query);
+            return new QueryResultIterator(operation, query);
         }
     }
 
@@ -887,18 +1847,19 @@ public class AzureTableDao<T extends TableServiceEntity> {
      * adaptor from azure pagination query cloudTable.executeSegmented(..) to java.util.Iterator<T>
      */
     public class QueryResultIterator implements Iterator<T> {
+        private final String operation;
         private final TableQuery<T> query;
         private Iterator<T> currPageIterator;
         private ResultContinuation continuationToken;
 
         public QueryResultIterator(TableQuery<T> query) {
+            this(OperationDiagnostics.QUERY_PAGE, query);
+        }
+
+        public QueryResultIterator(String operation, TableQuery<T> query) {
+            this.operation = operation;
             this.query = query;
-            ResultSegment<T> resultSegment;
-            try {
-                resultSegment = cloudTable.executeSegmented(query, continuationToken, requestOptions, opContext);
-            } catch (StorageException ex) {
-                throw new RuntimeException("Failed table.executeSegmented", ex);
-            }
+            ResultSegment<T> resultSegment = fetchSegment(operation, query, null);
             currPageIterator = resultSegment.getResults().iterator();
             continuationToken = resultSegment.getContinuationToken();
         }
@@ -911,12 +1872,7 @@ public class AzureTableDao<T extends TableServiceEntity> {
         @Override
         public T next() {
             if (! currPageIterator.hasNext() && continuationToken != null) {
-                ResultSegment<T> resultSegment;
-                try {
-                    resultSegment = cloudTable.executeSegmented(query, continuationToken, requestOptions, opContext);
-                } catch (StorageException ex) {
-                    throw new RuntimeException("Failed table.executeSegmented", ex);
-                }
+                ResultSegment<T> resultSegment = fetchSegment(operation, query, continuationToken);
                 currPageIterator = resultSegment.getResults().iterator();
                 continuationToken = resultSegment.getContinuationToken();
             }
@@ -927,6 +1883,113 @@ public class AzureTableDao<T extends TableServiceEntity> {
 
     }
 
+    /**
+     * Spliterator over all the result pages of a query, fetching the next pages asynchronously
+     * while the current one is consumed, so that network time overlaps with processing time.
+     * <br/>
+     * <br/>
+     * Each page depends on the continuation token of the previous one, so the pages are still fetched
+     * one after the other but <em>prefetchDepth</em> of them are requested ahead of the consumer.
+     * The memory is bounded by fetching at most <em>maxBufferedRows / pageSize</em> pages ahead
+     * (at least one when the prefetch is enabled).
+     * <br/>
+     * <br/>
+     * Closing the stream cancels the pages not fetched yet
+     */
+    public class PrefetchingSpliterator extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+        private final String operation;
+        private final TableQuery<T> query;
+        private final int prefetchDepth;
+        private final Executor executor;
+        private final Deque<CompletableFuture<ResultSegment<T>>> pendingPages = new ArrayDeque<>();
+        private CompletableFuture<ResultSegment<T>> lastRequestedPage;
+        private Iterator<T> currPageIterator = Collections.emptyIterator();
+        private boolean exhausted = false;
+
+        public PrefetchingSpliterator(String operation, TableQuery<T> query, int prefetchDepth, int maxBufferedRows, Executor executor) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            Validator.validateNotNull(executor, "executor");
+            this.operation = operation;
+            this.query = query;
+            this.executor = executor;
+            int pageSize = query.getTakeCount() != null ? query.getTakeCount() : DEFAULT_LIMIT;
+            this.prefetchDepth = prefetchDepth == 0 ? 0 : Math.max(1, Math.min(prefetchDepth, maxBufferedRows / pageSize));
+        }
+
+        /**
+         * @return a sequential stream over this spliterator, closing it when the stream is closed
+         */
+        public Stream<T> stream() {
+            return StreamSupport.stream(this, false).onClose(this::close);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (!currPageIterator.hasNext()) {
+                if (exhausted) {
+                    return false;
+                }
+                ResultSegment<T> resultSegment = nextSegment();
+                if (resultSegment == null) {
+                    exhausted = true;
+                    return false;
+                }
+                currPageIterator = resultSegment.getResults().iterator();
+            }
+            action.accept(currPageIterator.next());
+            return true;
+        }
+
+        @Override
+        public void close() {
+            exhausted = true;
+            pendingPages.forEach(page -> page.cancel(false));
+            pendingPages.clear();
+        }
+
+        /**
+         * Wait for the next page then request the following ones, up to <em>prefetchDepth</em> ahead
+         * @return the next page, null when the previous page was the last one
+         */
+        private ResultSegment<T> nextSegment() {
+            if (pendingPages.isEmpty()) {
+                requestNextPage();
+            }
+            CompletableFuture<ResultSegment<T>> page = pendingPages.poll();
+            while (pendingPages.size() < prefetchDepth) {
+                requestNextPage();
+            }
+            try {
+                return page.join();
+            } catch (CompletionException ex) {
+                close();
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+
+        private void requestNextPage() {
+            lastRequestedPage = lastRequestedPage == null
+                    ? CompletableFuture.supplyAsync(() -> fetchSegment(operation, query, null), executor)
+                    : lastRequestedPage.thenApplyAsync(previous -> previous == null || previous.getContinuationToken() == null
+                            ? null
+                            : fetchSegment(operation, query, previous.getContinuationToken()), executor);
+            pendingPages.add(lastRequestedPage);
+        }
+    }
+
+    private ResultSegment<T> fetchSegment(String operation, TableQuery<T> query, ResultContinuation continuationToken) {
+        try {
+            return read(null, query,
+                    readOptions -> execute(operation, context -> cloudTable.executeSegmented(query, continuationToken, readOptions, context)),
+                    ResultSegment::getResults);
+        } catch (StorageException ex) {
+            throw new RuntimeException("Failed table.executeSegmented", ex);
+        }
+    }
+
 
     private void validateSelectColumns(String[] columns) {
         List<String> columnsToFetch = Arrays.asList(columns);
@@ -945,15 +2008,218 @@ public class AzureTableDao<T extends TableServiceEntity> {
         return rangeQuery;
     }
 
-    private ArrayList<T> getResults(TableQuery<T> rangeQuery){
+    private ArrayList<T> getResults(String operation, TableQuery<T> rangeQuery){
+        return getResults(operation, rangeQuery, null);
+    }
+
+    private ArrayList<T> getResults(String operation, TableQuery<T> rangeQuery, String partitionKey){
         try {
-            return cloudTable.executeSegmented(rangeQuery, null, requestOptions, opContext)
-                    .getResults();
+            return read(partitionKey, rangeQuery,
+                    readOptions -> execute(operation, context -> cloudTable.executeSegmented(rangeQuery, null, readOptions, context)).getResults(),
+                    results -> results);
         } catch (StorageException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Execute a storage call with a fresh {@link OperationContext}, then report its diagnostics
+     * to the registered {@link OperationListener}
+     */
+    private <R> R execute(String operation, StorageCall<R> storageCall) throws StorageException {
+        OperationContext operationContext = new OperationContext();
+        if (operationListeners.isEmpty()) {
+            return storageCall.call(operationContext);
+        }
+
+        AtomicLong bytesReceived = new AtomicLong();
+        AtomicInteger retryCount = new AtomicInteger();
+        AtomicInteger throttledCount = new AtomicInteger();
+        operationContext.getResponseReceivedEventHandler().addListener(new StorageEvent<ResponseReceivedEvent>() {
+            @Override
+            public void eventOccurred(ResponseReceivedEvent event) {
+                if (event.getRequestResult() != null && event.getRequestResult().getStatusCode() == HttpURLConnection.HTTP_UNAVAILABLE) {
+                    throttledCount.incrementAndGet();
+                }
+                if (event.getConnectionObject() instanceof HttpURLConnection) {
+                    long contentLength = ((HttpURLConnection) event.getConnectionObject()).getContentLengthLong();
+                    if (contentLength > 0) {
+                        bytesReceived.addAndGet(contentLength);
+                    }
+                }
+            }
+        });
+        operationContext.getRetryingEventHandler().addListener(new StorageEvent<RetryingEvent>() {
+            @Override
+            public void eventOccurred(RetryingEvent event) {
+                retryCount.incrementAndGet();
+            }
+        });
+        for (OperationListener listener : operationListeners) {
+            listener.onOperationStarted(operation, operationContext);
+        }
+
+        long start = System.nanoTime();
+        Exception failure = null;
+        try {
+            return storageCall.call(operationContext);
+        } catch (StorageException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            long serviceLatencyMs = 0L;
+            for (RequestResult requestResult : operationContext.getRequestResults()) {
+                if (requestResult.getStartDate() != null && requestResult.getStopDate() != null) {
+                    serviceLatencyMs += requestResult.getStopDate().getTime() - requestResult.getStartDate().getTime();
+                }
+            }
+            RequestResult lastResult = operationContext.getLastResult();
+            OperationDiagnostics diagnostics = new OperationDiagnostics(cloudTable.getName(), operation,
+                    System.nanoTime() - start, serviceLatencyMs, retryCount.get(), throttledCount.get(), bytesReceived.get(),
+                    lastResult != null ? lastResult.getServiceRequestID() : null,
+                    lastResult != null ? lastResult.getStatusCode() : 0,
+                    failure);
+            for (OperationListener listener : operationListeners) {
+                try {
+                    listener.onOperationCompleted(diagnostics);
+                } catch (RuntimeException listenerException) {
+                    LOG.warn("Operation listener failed for " + diagnostics, listenerException);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StorageCall<R> {
+        R call(OperationContext operationContext) throws StorageException;
+    }
+
+    @FunctionalInterface
+    private interface ReadCall<R> {
+        R read(TableRequestOptions readOptions) throws StorageException;
+    }
+
+    /**
+     * Execute a read, picking the request options from the learnt column types.
+     * <br/>
+     * Reads are done without metadata through a {@link EdmTypeResolver.Session}, except the reads of a partition
+     * whose column types have not been learnt yet and the scans while no column type has been learnt at all,
+     * which are done with full metadata to learn them.
+     * <br/>
+     * If a read without metadata returns an unknown column or a value not matching its learnt type, or cannot be
+     * decoded with the learnt types, the types of the mismatched partitions are dropped and learnt again with full metadata: a partition read is done again,
+     * while a scan only reads again the rows of the mismatched partitions, unless there are more than
+     * {@link #MAX_PARTITION_REREADS} of them, in which case the whole page is read again
+     *
+     * @param partitionKey the single partition read, or null for a scan
+     * @param query        the query of a scan, used to read the mismatched partitions again
+     * @param call         the read
+     * @param entitiesOf   extract the entities of the read result
+     * @return the read result
+     */
+    private <R> R read(String partitionKey, TableQuery<T> query, ReadCall<R> call, Function<R, List<T>> entitiesOf) throws StorageException {
+        if (typeResolver == null) {
+            return call.read(requestOptions);
+        }
+        boolean scan = partitionKey == null;
+        if (scan ? !typeResolver.isEmpty() : typeResolver.knows(partitionKey)) {
+            EdmTypeResolver.Session session = typeResolver.newSession();
+            TableRequestOptions sessionOptions = new TableRequestOptions(requestOptions);
+            sessionOptions.setPropertyResolver(session);
+            R result;
+            try {
+                result = call.read(sessionOptions);
+            } catch (StorageException ex) {
+                if (ex.getHttpStatusCode() != HttpURLConnection.HTTP_OK) {
+                    throw ex;
+                }
+                // The response was received but could not be decoded with the learnt types
+                Set<String> undecodablePartitions = scan ? session.getResolvedPartitions() : Collections.singleton(partitionKey);
+                LOG.debug("Failed to decode the partitions {} of table {} with their learnt column types, reading them again with full metadata",
+                        undecodablePartitions, cloudTable.getName(), ex);
+                undecodablePartitions.forEach(typeResolver::forget);
+                return learningRead(call, entitiesOf);
+            }
+            if (!session.hasMismatches()) {
+                return result;
+            }
+            Set<String> mismatchedPartitions = session.getMismatchedPartitions();
+            LOG.debug("Column types of the partitions {} of table {} changed, reading them again with full metadata",
+                    mismatchedPartitions, cloudTable.getName());
+            mismatchedPartitions.forEach(typeResolver::forget);
+            if (scan && mismatchedPartitions.size() <= MAX_PARTITION_REREADS) {
+                List<T> entities = entitiesOf.apply(result);
+                for (String mismatchedPartition : mismatchedPartitions) {
+                    readPartitionAgain(query, mismatchedPartition, entities);
+                }
+                return result;
+            }
+        }
+        return learningRead(call, entitiesOf);
+    }
+
+    private <R> R learningRead(ReadCall<R> call, Function<R, List<T>> entitiesOf) throws StorageException {
+        R result = call.read(learningRequestOptions);
+        learnTypes(entitiesOf.apply(result));
+        return result;
+    }
+
+    /**
+     * Read again with full metadata the rows of a partition returned by a scan page, and replace them in the page
+     *
+     * @param query        the query of the scan
+     * @param partitionKey the mismatched partition
+     * @param entities     the entities of the page, sorted by partition key and row key
+     */
+    private void readPartitionAgain(TableQuery<T> query, String partitionKey, List<T> entities) throws StorageException {
+        int firstIndex = -1;
+        String minRowKey = null;
+        String maxRowKey = null;
+        for (int i = 0; i < entities.size(); i++) {
+            T entity = entities.get(i);
+            if (entity != null && partitionKey.equals(entity.getPartitionKey())) {
+                if (firstIndex < 0) {
+                    firstIndex = i;
+                    minRowKey = entity.getRowKey();
+                }
+                maxRowKey = entity.getRowKey();
+            }
+        }
+        if (firstIndex < 0) {
+            return;
+        }
+
+        String filter = combineFilters(generateFilterCondition(PARTITION_KEY, EQUAL, partitionKey),
+                Operators.AND,
+                combineFilters(generateFilterCondition(ROW_KEY, GREATER_THAN_OR_EQUAL, minRowKey),
+                        Operators.AND,
+                        generateFilterCondition(ROW_KEY, LESS_THAN_OR_EQUAL, maxRowKey)));
+        if (StringUtils.isNotBlank(query.getFilterString())) {
+            filter = combineFilters(query.getFilterString(), Operators.AND, filter);
+        }
+        TableQuery<T> partitionQuery = applySelect(TableQuery.from(entityClass).where(filter), query.getColumns());
+
+        List<T> partitionEntities = new ArrayList<>();
+        ResultContinuation continuationToken = null;
+        do {
+            ResultContinuation pageToken = continuationToken;
+            ResultSegment<T> resultSegment = execute(OperationDiagnostics.PARTITION_QUERY,
+                    context -> cloudTable.executeSegmented(partitionQuery, pageToken, learningRequestOptions, context));
+            partitionEntities.addAll(resultSegment.getResults());
+            continuationToken = resultSegment.getContinuationToken();
+        } while (continuationToken != null);
+        learnTypes(partitionEntities);
+
+        entities.removeIf(entity -> entity != null && partitionKey.equals(entity.getPartitionKey()));
+        entities.addAll(firstIndex, partitionEntities);
+    }
+
+    private void learnTypes(List<T> entities) {
+        entities.stream()
+                .filter(Objects::nonNull)
+                .forEach(entity -> typeResolver.learn((DynamicTableEntity) entity));
+    }
+
     /**
      * Generic filter on column.
      * <br/>
@@ -17,9 +17,11 @@ import static com.doanduyhai.azure.spring_config.Constants.AZURE_KEYVAULT_PROPER
 import static com.doanduyhai.azure.spring_config.Constants.AZURE_TABLE_PROPERTYSOURCE_NAME;
 import static java.lang.String.format;
 
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.logging.DeferredLog;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
 
 public class AzureTableEnvironmentProcessor {
 
@@ -33,12 +35,34 @@ public class AzureTableEnvironmentProcessor {
     }
 
     public void addAzureTablePropertySource(String connectionString, String tableName) {
-        logger.info(format( "Adding Azure table '%s' as a Spring property source", tableName));
-        final MutablePropertySources sources = this.environment.getPropertySources();
-        final AzureTableOperation azureTableOperation = new AzureTableOperation(connectionString, tableName);
+        registerAzureTablePropertySource(createAzureTablePropertySource(connectionString, tableName));
+    }
 
-        AzureTablePropertySource propertySource = new AzureTablePropertySource(AZURE_TABLE_PROPERTYSOURCE_NAME, azureTableOperation);
-        sources.addAfter(AZURE_KEYVAULT_PROPERTYSOURCE_NAME, propertySource);
+    /**
+     * Create the Azure table property source, loading the table in snapshot mode, without touching the environment.
+     * Safe to call from another thread than the one post-processing the environment
+     *
+     * @param connectionString the storage account connection string.
+     * @param tableName        the table holding the properties.
+     * @return the Azure table property source.
+     */
+    public AzureTablePropertySource createAzureTablePropertySource(String connectionString, String tableName) {
+        logger.info(format("Loading the Azure table '%s'", tableName));
+        final AzureTableProperties tableProperties = Binder.get(this.environment)
+                .bind(AzureTableProperties.PREFIX, AzureTableProperties.class)
+                .orElseGet(AzureTableProperties::new);
+        final AzureTableOperation azureTableOperation = new AzureTableOperation(connectionString, tableName, tableProperties);
+        return new AzureTablePropertySource(AZURE_TABLE_PROPERTYSOURCE_NAME, azureTableOperation);
+    }
 
+    /**
+     * Add the Azure table property source to the environment, right after the key vault one
+     *
+     * @param propertySource the Azure table property source, or a stand-in while it loads.
+     */
+    public void registerAzureTablePropertySource(PropertySource<?> propertySource) {
+        logger.info(format("Adding the Azure table property source '%s'", propertySource.getName()));
+        final MutablePropertySources sources = this.environment.getPropertySources();
+        sources.addAfter(AZURE_KEYVAULT_PROPERTYSOURCE_NAME, propertySource);
     }
 }
@@ -13,175 +13,539 @@
  */
 package com.doanduyhai.azure.spring_config.azure_table;
 
-import static java.util.stream.Collectors.toList;
+import static com.doanduyhai.azure.spring_config.azure_table.PropertyValueDao.COLLECTION_INDEX_PREFIX;
+import static com.doanduyhai.azure.spring_config.azure_table.PropertyValueDao.PROPERTY_VALUE_ROW_KEY;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
-import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.microsoft.azure.storage.ResultContinuation;
+import com.doanduyhai.azure.spring_config.metrics.ConfigMetrics;
+import com.doanduyhai.azure.spring_config.utils.LocalSnapshotFile;
+import com.doanduyhai.azure.spring_config.utils.PropertyNameCache;
+import com.doanduyhai.azure.spring_config.utils.RefreshScheduler;
+import com.doanduyhai.azure.spring_config.utils.Validator;
+import com.doanduyhai.azure.spring_config.utils.VersionedPropertyNames;
 import com.microsoft.azure.storage.core.SR;
 import com.microsoft.azure.storage.table.DynamicTableEntity;
+import com.microsoft.azure.storage.table.EdmType;
 import com.microsoft.azure.storage.table.EntityProperty;
 
 public class AzureTableOperation {
 
-    private static final String PROPERTY_VALUE_ROW_KEY = "propertyValue";
-    private static final String COLLECTION_INDEX_PREFIX = "_";
+    private static final String ROW_KEY_COLUMN = "RowKey";
+    private static final String TIMESTAMP_COLUMN = "Timestamp";
+
+    /**
+     * Overlap of the delta refreshes. The watermark only has a millisecond precision and the partitions may
+     * commit with skewed clocks, so every refresh fetches again the entities modified shortly before the watermark
+     */
+    static final long WATERMARK_SKEW_MARGIN_MS = 60_000L;
+    private static final Logger LOG = LoggerFactory.getLogger(AzureTableOperation.class);
+    /**
+     * Type codes of the local cache cells. Part of the file format: never change nor reuse a code
+     */
+    private static final byte CELL_STRING = 0;
+    private static final byte CELL_BOOLEAN = 1;
+    private static final byte CELL_DATE_TIME = 2;
+    private static final byte CELL_DOUBLE = 3;
+    private static final byte CELL_GUID = 4;
+    private static final byte CELL_INT32 = 5;
+    private static final byte CELL_INT64 = 6;
+    private static final byte CELL_BINARY = 7;
+    private static final Pattern DISALLOWED_KEY_CHARACTERS = Pattern.compile("[/#?\t\n\r\\\\]");
+    private static final Map<Class<?>, Function<EntityProperty, Object>> DECODERS_BY_TYPE = new HashMap<>();
+
+    static {
+        DECODERS_BY_TYPE.put(byte[].class, EntityProperty::getValueAsByteArray);
+        DECODERS_BY_TYPE.put(Byte[].class, EntityProperty::getValueAsByteObjectArray);
+        DECODERS_BY_TYPE.put(String.class, EntityProperty::getValueAsString);
+        DECODERS_BY_TYPE.put(boolean.class, EntityProperty::getValueAsBoolean);
+        DECODERS_BY_TYPE.put(Boolean.class, EntityProperty::getValueAsBooleanObject);
+        DECODERS_BY_TYPE.put(Date.class, EntityProperty::getValueAsDate);
+        DECODERS_BY_TYPE.put(double.class, EntityProperty::getValueAsDouble);
+        DECODERS_BY_TYPE.put(Double.class, EntityProperty::getValueAsDoubleObject);
+        DECODERS_BY_TYPE.put(UUID.class, EntityProperty::getValueAsUUID);
+        DECODERS_BY_TYPE.put(int.class, EntityProperty::getValueAsInteger);
+        DECODERS_BY_TYPE.put(Integer.class, EntityProperty::getValueAsIntegerObject);
+        DECODERS_BY_TYPE.put(long.class, EntityProperty::getValueAsLong);
+        DECODERS_BY_TYPE.put(Long.class, EntityProperty::getValueAsLongObject);
+    }
+
     private final PropertyValueDao propertyValueDao;
+    private final ConfigMetrics metrics = ConfigMetrics.get();
+
+    /**
+     * Immutable in-memory copy of the table, indexed by partition key.
+     * Only set in snapshot mode, null otherwise. Refreshes swap the whole map
+     */
+    private volatile Map<String, DynamicTableEntity> snapshot;
+    private final boolean snapshotEnabled;
+
+    /**
+     * Greatest entity <em>Timestamp</em> seen so far, used as watermark for delta refreshes
+     */
+    private volatile Date lastSyncTimestamp;
+    private final int reconcileEvery;
+    private final int scanParallelism;
+    private int refreshCount = 0;
+
+    /**
+     * Periodic refresh of the snapshot, or of the partition keys in key filter mode, null when disabled
+     */
+    private volatile RefreshScheduler.ScheduledRefresh scheduledRefresh;
+
+    /**
+     * Reload of the table after serving the snapshot from the local cache, null when not served from it
+     */
+    private volatile Future<?> reconciliation;
+
+    /**
+     * Last-known-good local copy of the snapshot, null when disabled or not in snapshot mode
+     */
+    private final LocalSnapshotFile localCache;
+
+    /**
+     * Partition keys of the table, scanned once then cached.
+     * When the key filter is enabled, they are also used to answer "definitely absent" without any I/O
+     * and rescanned every refresh interval, so that the rows added since are found
+     */
+    private final VersionedPropertyNames propertyNames = new VersionedPropertyNames();
+    private volatile boolean propertyNamesLoaded = false;
+    private final boolean keyFilterEnabled;
+
+    /**
+     * Decoded values by property name, reused as long as the entity is unchanged
+     */
+    private final Map<String, DecodedValue> decodedValues = new ConcurrentHashMap<>();
+
+    /**
+     * Property names stripped from the characters disallowed in keys, by requested name
+     */
+    private final PropertyNameCache normalizedNames = new PropertyNameCache(AzureTableOperation::normalizePropertyName);
 
     public AzureTableOperation(String connectionString, String tableName) {
-        this.propertyValueDao = new PropertyValueDao(connectionString, tableName);
+        this(connectionString, tableName, new AzureTableProperties());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param connectionString the storage account connection string.
+     * @param tableName        the table holding the properties.
+     * @param tableProperties  the <em>azure.table</em> settings.
+     */
+    public AzureTableOperation(String connectionString, String tableName, AzureTableProperties tableProperties) {
+        this(new PropertyValueDao(connectionString, tableName, tableProperties.getPayloadFormat()), tableProperties);
     }
 
+    AzureTableOperation(PropertyValueDao propertyValueDao, AzureTableProperties tableProperties) {
+        this.propertyValueDao = propertyValueDao;
+        if (LoggingOperationListener.isEnabled()) {
+            propertyValueDao.addOperationListener(new LoggingOperationListener());
+        }
+        if (metrics.isEnabled()) {
+            propertyValueDao.addOperationListener(metrics::recordTableOperation);
+        }
+        this.snapshotEnabled = tableProperties.isSnapshotEnabled();
+        this.keyFilterEnabled = !snapshotEnabled && tableProperties.isKeyFilterEnabled();
+        final long refreshInMillis = tableProperties.getRefreshInterval();
+        Validator.validateTrue(!keyFilterEnabled || refreshInMillis > 0,
+                "The key filter needs a strictly positive refresh interval, otherwise the properties added after startup are never found");
+        this.reconcileEvery = tableProperties.getReconcileEvery();
+        this.scanParallelism = tableProperties.getScanParallelism();
+        this.localCache = snapshotEnabled && tableProperties.getLocalCacheFile() != null
+                ? new LocalSnapshotFile(Paths.get(tableProperties.getLocalCacheFile()),
+                        tableProperties.getLocalCacheEncryptionKey(),
+                        tableProperties.getLocalCacheMaxStaleness())
+                : null;
+        if (snapshotEnabled) {
+            final LocalSnapshotFile.Snapshot cachedSnapshot = localCache != null ? localCache.read() : null;
+            final Map<String, DynamicTableEntity> cachedEntities = cachedSnapshot != null ? fromLocalCache(cachedSnapshot) : null;
+            if (cachedEntities != null) {
+                LOG.info("Serving the Azure table properties from the local cache {}, saved at {}", localCache.getFile(), new Date(cachedSnapshot.getSavedAt()));
+                this.snapshot = cachedEntities;
+            } else {
+                this.snapshot = loadSnapshot();
+                saveLocalCache(snapshot);
+            }
+            propertyNames.update(snapshot.keySet());
+            propertyNamesLoaded = true;
 
-    public String[] getPropertyNames() {
-        List<String> propertyNames = new ArrayList<>();
+            if (refreshInMillis > 0) {
+                scheduledRefresh = RefreshScheduler.shared().schedule("azure-table", refreshInMillis, this::refreshSnapshot);
+            }
+            // Reconcile the local cache with the table last, once every field is set
+            if (cachedEntities != null) {
+                reconciliation = RefreshScheduler.shared().submit("azure-table-reconcile", this::reloadSnapshot);
+            }
+        } else if (keyFilterEnabled) {
+            loadPropertyNames();
+            scheduledRefresh = RefreshScheduler.shared().schedule("azure-table-keys", refreshInMillis, this::refreshPropertyNames);
+        }
+    }
 
-        AzureTableDao<DynamicTableEntity>.FullScanQuery fullScanQuery = propertyValueDao.fullScanQuery();
 
-        Pair<List<DynamicTableEntity>, ResultContinuation> listResultContinuationPair = fullScanQuery
-                .pageSize(100)
-                .listFirstPage();
+    /**
+     * Stop refreshing the snapshot or the partition keys
+     */
+    public void close() {
+        RefreshScheduler.ScheduledRefresh refresh = scheduledRefresh;
+        if (refresh != null) {
+            refresh.cancel();
+        }
+        Future<?> pendingReconciliation = reconciliation;
+        if (pendingReconciliation != null) {
+            pendingReconciliation.cancel(false);
+        }
+    }
 
-        listResultContinuationPair
-                .getLeft()
-                .stream()
-                .map(DynamicTableEntity::getPartitionKey)
-                .forEach(propertyNames::add);
+    /**
+     * Get the property names. The returned array instance stays the same as long as the key set does not change
+     *
+     * @return the property names.
+     */
+    public String[] getPropertyNames() {
+        if (!propertyNamesLoaded) {
+            loadPropertyNames();
+        }
+        return propertyNames.get();
+    }
 
-        ResultContinuation continuationToken = listResultContinuationPair.getRight();
+    /**
+     * Get the version of the property names, incremented each time the key set changes
+     *
+     * @return the property names version.
+     */
+    public long getPropertyNamesVersion() {
+        return propertyNames.getVersion();
+    }
 
-        while (continuationToken != null) {
-            Pair<List<DynamicTableEntity>, ResultContinuation> result = fullScanQuery.listNextPage(continuationToken);
+    private synchronized void loadPropertyNames() {
+        if (!propertyNamesLoaded) {
+            propertyNames.update(scanPropertyNames());
+            propertyNamesLoaded = true;
+        }
+    }
 
-            continuationToken = result.getRight();
-            result
-                    .getLeft()
-                    .stream()
-                    .map(DynamicTableEntity::getPartitionKey)
-                    .forEach(propertyNames::add);
+    /**
+     * Rescan the partition keys and swap them if the key set has changed.
+     * On failure the current keys are kept and the scheduler backs off
+     */
+    void refreshPropertyNames() {
+        if (propertyNames.update(scanPropertyNames())) {
+            LOG.debug("The partition keys of the Azure table have changed, {} keys", propertyNames.get().length);
         }
+    }
 
-        return propertyNames.toArray(new String[propertyNames.size()]);
+    /**
+     * Full scan the partition keys of the table
+     */
+    private List<String> scanPropertyNames() {
+        return propertyValueDao.keysQuery().listPartitionKeys();
     }
 
 
     public Object getProperty(String propertyName) {
-        String normalizePropertyName = normalizePropertyName(propertyName);
-        DynamicTableEntity foundEntity = propertyValueDao.crud().findById(normalizePropertyName, PROPERTY_VALUE_ROW_KEY);
+        String normalizePropertyName = normalizedNames.get(propertyName);
+        if (keyFilterEnabled && !propertyNames.contains(normalizePropertyName)) {
+            metrics.recordCacheLookup(ConfigMetrics.AZURE_TABLE_SOURCE, true);
+            return null;
+        }
+        DynamicTableEntity foundEntity = snapshotEnabled
+                ? snapshot.get(normalizePropertyName)
+                : propertyValueDao.crud().findById(normalizePropertyName, PROPERTY_VALUE_ROW_KEY);
+        metrics.recordCacheLookup(ConfigMetrics.AZURE_TABLE_SOURCE, snapshotEnabled);
         if (foundEntity != null) {
-            HashMap<String, EntityProperty> properties = foundEntity.getProperties();
-            if (properties.size() == 1) {
-                return properties
-                        .values()
-                        .stream()
-                        .limit(1L)
-                        .filter(entityProperty -> !entityProperty.getIsNull())
-                        .findFirst()
-                        .map(AzureTableOperation::mapValueByType)
-                        .orElse(null);
-            } else {
-                boolean isKeyIndexValue = properties
-                        .keySet()
-                        .stream()
-                        .allMatch(checkKeyIsInteger());
-
-                if (isKeyIndexValue) {
-                    return properties
-                            .entrySet()
-                            .stream()
-                            .sorted((e1, e2) -> {
-                                Integer index1 = Integer.parseInt(e1.getKey().replaceFirst(COLLECTION_INDEX_PREFIX, ""));
-                                Integer index2 = Integer.parseInt(e2.getKey().replaceFirst(COLLECTION_INDEX_PREFIX, ""));
-                                return index1.compareTo(index2);
-                            })
-                            .map(entry -> mapValueByType(entry.getValue()))
-                            .collect(toList());
-                } else {
-                    return properties
-                            .entrySet()
-                            .stream()
-                            .collect(Collectors.toMap(Map.Entry::getKey, entry -> mapValueByType(entry.getValue())));
-                }
+            DecodedValue decodedValue = decodedValues.get(normalizePropertyName);
+            if (decodedValue == null || !decodedValue.isDecodedFrom(foundEntity)) {
+                decodedValue = new DecodedValue(foundEntity, decode(foundEntity));
+                decodedValues.put(normalizePropertyName, decodedValue);
             }
+            return decodedValue.value;
         } else {
+            decodedValues.remove(normalizePropertyName);
             return null;
         }
     }
 
-    private Predicate<String> checkKeyIsInteger() {
-        return key -> {
-            if (key.startsWith("_")) {
-                String formattedKey = key.replaceFirst(COLLECTION_INDEX_PREFIX, "");
-                try {
-                    int index = Integer.parseInt(formattedKey);
-                    return index >= 0;
-                } catch (NumberFormatException ex) {
-                    return false;
-                }
-            } else {
-                return false;
+    /**
+     * Decode the entity into a single value, an immutable list if all the columns are <em>_index</em> columns,
+     * or an immutable map otherwise
+     */
+    private static Object decode(DynamicTableEntity entity) {
+        HashMap<String, EntityProperty> properties = entity.getProperties();
+        if (properties.size() == 1) {
+            EntityProperty entityProperty = properties.values().iterator().next();
+            return entityProperty.getIsNull() ? null : mapValueByType(entityProperty);
+        }
+
+        int[] indexes = new int[properties.size()];
+        EntityProperty[] values = new EntityProperty[properties.size()];
+        int position = 0;
+        for (Map.Entry<String, EntityProperty> entry : properties.entrySet()) {
+            int index = parseCollectionIndex(entry.getKey());
+            if (index < 0) {
+                Map<String, Object> mapValue = new HashMap<>(properties.size() * 4 / 3 + 1);
+                properties.forEach((column, entityProperty) -> mapValue.put(column, mapValueByType(entityProperty)));
+                return Collections.unmodifiableMap(mapValue);
             }
-        };
+            indexes[position] = index;
+            values[position] = entry.getValue();
+            position++;
+        }
+
+        Integer[] order = new Integer[indexes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i1, i2) -> Integer.compare(indexes[i1], indexes[i2]));
+        Object[] listValue = new Object[order.length];
+        for (int i = 0; i < order.length; i++) {
+            listValue[i] = mapValueByType(values[order[i]]);
+        }
+        return Collections.unmodifiableList(Arrays.asList(listValue));
     }
 
     /**
-     * https://docs.microsoft.com/en-us/rest/api/storageservices/understanding-the-table-service-data-model#characters-disallowed-in-key-fields
+     * @return the index of a <em>_index</em> column, -1 for any other column
      */
-    private static String normalizePropertyName(String propertyName) {
-        return propertyName.replaceAll("(?:/|#|\\?|\t|\n|\r|\\\\)", "");
+    private static int parseCollectionIndex(String column) {
+        if (!column.startsWith(COLLECTION_INDEX_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(column.substring(COLLECTION_INDEX_PREFIX.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
     }
-    private static Object mapValueByType(EntityProperty entityProperty) {
-        Class<?> type = entityProperty.getType();
-        if (type.equals(byte[].class)) {
-            return entityProperty.getValueAsByteArray();
+
+    /**
+     * Decoded value of an entity. It stays valid as long as the entity has the same ETag or,
+     * for the entities loaded from the local cache which have none, is the very same instance
+     */
+    private static class DecodedValue {
+        private final DynamicTableEntity entity;
+        private final String etag;
+        private final Object value;
+
+        private DecodedValue(DynamicTableEntity entity, Object value) {
+            this.entity = entity;
+            this.etag = entity.getEtag();
+            this.value = value;
         }
-        else if (type.equals(Byte[].class)) {
-            return entityProperty.getValueAsByteObjectArray();
+
+        private boolean isDecodedFrom(DynamicTableEntity other) {
+            return entity == other || (etag != null && etag.equals(other.getEtag()));
         }
-        else if (type.equals(String.class)) {
-            return entityProperty.getValueAsString();
+    }
+
+    /**
+     * Full scan the table once and keep every <em>propertyValue</em> row in memory
+     */
+    private Map<String, DynamicTableEntity> loadSnapshot() {
+        Map<String, DynamicTableEntity> entities = new HashMap<>();
+        List<DynamicTableEntity> allEntities = propertyValueDao.fullScanQuery()
+                .parallelism(scanParallelism)
+                .listAll();
+        for (DynamicTableEntity entity : allEntities) {
+            if (PROPERTY_VALUE_ROW_KEY.equals(entity.getRowKey())) {
+                entities.put(entity.getPartitionKey(), entity);
+                advanceWatermark(entity);
+            }
         }
-        else if (type.equals(boolean.class)) {
-            return entityProperty.getValueAsBoolean();
+        return Collections.unmodifiableMap(entities);
+    }
+
+    /**
+     * Refresh the snapshot by fetching only the entities modified since the last sync, minus
+     * {@link #WATERMARK_SKEW_MARGIN_MS}. The entities fetched again with an unchanged ETag are ignored.
+     * Every <em>reconcileEvery</em> refreshes, a key-only scan also detects the deleted entities.
+     * On failure the current snapshot is kept and the scheduler backs off
+     */
+    private synchronized void refreshSnapshot() {
+        Map<String, DynamicTableEntity> entities = new HashMap<>(snapshot);
+        boolean changed = false;
+
+        Date watermark = lastSyncTimestamp;
+        Iterable<DynamicTableEntity> modifiedEntities = watermark == null
+                ? propertyValueDao.filterQuery(propertyValueRowFilter()).listAll()
+                : propertyValueDao.filterQuery(
+                        propertyValueRowFilter(),
+                        new AzureTableDao.GenericFilter(TIMESTAMP_COLUMN, AzureTableDao.Comp.gt,
+                                new Date(watermark.getTime() - WATERMARK_SKEW_MARGIN_MS)))
+                .listAll();
+        for (DynamicTableEntity entity : modifiedEntities) {
+            advanceWatermark(entity);
+            DynamicTableEntity current = entities.get(entity.getPartitionKey());
+            if (current == null || current.getEtag() == null || !current.getEtag().equals(entity.getEtag())) {
+                entities.put(entity.getPartitionKey(), entity);
+                changed = true;
+            }
         }
-        else if (type.equals(Boolean.class)) {
-            return entityProperty.getValueAsBooleanObject();
+
+        refreshCount++;
+        if (reconcileEvery > 0 && refreshCount % reconcileEvery == 0) {
+            Set<String> existingKeys = new HashSet<>();
+            propertyValueDao.keysQuery()
+                    .where(propertyValueRowFilter())
+                    .forEachKey((partitionKey, rowKey) -> existingKeys.add(partitionKey));
+            changed |= entities.keySet().retainAll(existingKeys);
         }
-        else if (type.equals(Date.class)) {
-            return entityProperty.getValueAsDate();
+
+        if (changed) {
+            snapshot = Collections.unmodifiableMap(entities);
+            propertyNames.update(entities.keySet());
+            decodedValues.keySet().retainAll(entities.keySet());
+            saveLocalCache(snapshot);
         }
-        else if (type.equals(double.class)) {
-            return entityProperty.getValueAsDouble();
+    }
+
+    /**
+     * Replace the snapshot served from the local cache by a full load of the table
+     */
+    private synchronized void reloadSnapshot() {
+        try {
+            Map<String, DynamicTableEntity> entities = loadSnapshot();
+            snapshot = entities;
+            propertyNames.update(entities.keySet());
+            decodedValues.keySet().retainAll(entities.keySet());
+            saveLocalCache(entities);
+        } catch (RuntimeException ex) {
+            LOG.error("Failed to load the Azure table, serving the local cache until the next refresh", ex);
         }
-        else if (type.equals(Double.class)) {
-            return entityProperty.getValueAsDoubleObject();
+    }
+
+    private void saveLocalCache(Map<String, DynamicTableEntity> entities) {
+        if (localCache == null) {
+            return;
         }
-        else if (type.equals(UUID.class)) {
-            return entityProperty.getValueAsUUID();
+        Map<String, Map<String, LocalSnapshotFile.Cell>> cachedEntities = new HashMap<>();
+        for (DynamicTableEntity entity : entities.values()) {
+            Map<String, LocalSnapshotFile.Cell> cells = new HashMap<>();
+            entity.getProperties().forEach((column, property) -> {
+                if (!property.getIsNull()) {
+                    cells.put(column, toCell(property));
+                }
+            });
+            cachedEntities.put(entity.getPartitionKey(), cells);
         }
-        else if (type.equals(int.class)) {
-            return entityProperty.getValueAsInteger();
+        localCache.write(cachedEntities);
+    }
+
+    /**
+     * @return the cached entities, null if a cell cannot be decoded
+     */
+    private static Map<String, DynamicTableEntity> fromLocalCache(LocalSnapshotFile.Snapshot cachedSnapshot) {
+        Map<String, DynamicTableEntity> entities = new HashMap<>();
+        try {
+            cachedSnapshot.getEntries().forEach((partitionKey, cells) -> {
+                HashMap<String, EntityProperty> properties = new HashMap<>();
+                cells.forEach((column, cell) -> properties.put(column, fromCell(cell)));
+                entities.put(partitionKey, new DynamicTableEntity(partitionKey, PROPERTY_VALUE_ROW_KEY, properties));
+            });
+        } catch (IllegalArgumentException ex) {
+            LOG.warn("Ignoring the local cache, it holds a value that cannot be decoded", ex);
+            return null;
         }
-        else if (type.equals(Integer.class)) {
-            return entityProperty.getValueAsIntegerObject();
+        return Collections.unmodifiableMap(entities);
+    }
+
+    /**
+     * Encode the property with a stable type code, independent of the {@link EdmType} declaration order,
+     * dates as epoch milliseconds and binaries in base64. Other EDM types are stored as strings
+     */
+    private static LocalSnapshotFile.Cell toCell(EntityProperty property) {
+        EdmType edmType = property.getEdmType();
+        if (edmType == null) {
+            return new LocalSnapshotFile.Cell(CELL_STRING, property.getValueAsString());
         }
-        else if (type.equals(long.class)) {
-            return entityProperty.getValueAsLong();
+        switch (edmType) {
+            case BOOLEAN:
+                return new LocalSnapshotFile.Cell(CELL_BOOLEAN, property.getValueAsString());
+            case DATE_TIME:
+                return new LocalSnapshotFile.Cell(CELL_DATE_TIME, String.valueOf(property.getValueAsDate().getTime()));
+            case DOUBLE:
+                return new LocalSnapshotFile.Cell(CELL_DOUBLE, property.getValueAsString());
+            case GUID:
+                return new LocalSnapshotFile.Cell(CELL_GUID, property.getValueAsString());
+            case INT32:
+                return new LocalSnapshotFile.Cell(CELL_INT32, property.getValueAsString());
+            case INT64:
+                return new LocalSnapshotFile.Cell(CELL_INT64, property.getValueAsString());
+            case BINARY:
+                return new LocalSnapshotFile.Cell(CELL_BINARY, Base64.getEncoder().encodeToString(property.getValueAsByteArray()));
+            default:
+                return new LocalSnapshotFile.Cell(CELL_STRING, property.getValueAsString());
         }
-        else if (type.equals(Long.class)) {
-            return entityProperty.getValueAsLongObject();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the type code is unknown or the value does not match it
+     */
+    private static EntityProperty fromCell(LocalSnapshotFile.Cell cell) {
+        String value = cell.getValue();
+        switch (cell.getType()) {
+            case CELL_STRING:
+                return new EntityProperty(value);
+            case CELL_BOOLEAN:
+                return new EntityProperty(Boolean.parseBoolean(value));
+            case CELL_DATE_TIME:
+                return new EntityProperty(new Date(Long.parseLong(value)));
+            case CELL_DOUBLE:
+                return new EntityProperty(Double.parseDouble(value));
+            case CELL_GUID:
+                return new EntityProperty(UUID.fromString(value));
+            case CELL_INT32:
+                return new EntityProperty(Integer.parseInt(value));
+            case CELL_INT64:
+                return new EntityProperty(Long.parseLong(value));
+            case CELL_BINARY:
+                return new EntityProperty(Base64.getDecoder().decode(value));
+            default:
+                throw new IllegalArgumentException(String.format("Unknown local cache type code %d", cell.getType()));
+        }
+    }
+
+    private static AzureTableDao.GenericFilter propertyValueRowFilter() {
+        return new AzureTableDao.GenericFilter(ROW_KEY_COLUMN, AzureTableDao.Comp.eq, PROPERTY_VALUE_ROW_KEY);
+    }
+
+    private void advanceWatermark(DynamicTableEntity entity) {
+        Date timestamp = entity.getTimestamp();
+        if (timestamp != null && (lastSyncTimestamp == null || timestamp.after(lastSyncTimestamp))) {
+            lastSyncTimestamp = timestamp;
         }
-        else {
-            throw new IllegalArgumentException(String.format(SR.TYPE_NOT_SUPPORTED, type.toString()));
+    }
+
+    /**
+     * https://docs.microsoft.com/en-us/rest/api/storageservices/understanding-the-table-service-data-model#characters-disallowed-in-key-fields
+     */
+    private static String normalizePropertyName(String propertyName) {
+        return DISALLOWED_KEY_CHARACTERS.matcher(propertyName).replaceAll("");
+    }
+    private static Object mapValueByType(EntityProperty entityProperty) {
+        Function<EntityProperty, Object> decoder = DECODERS_BY_TYPE.get(entityProperty.getType());
+        if (decoder == null) {
+            throw new IllegalArgumentException(String.format(SR.TYPE_NOT_SUPPORTED, entityProperty.getType().toString()));
         }
+        return decoder.apply(entityProperty);
     }
 }
@@ -17,6 +17,9 @@ import static com.doanduyhai.azure.spring_config.azure_table.AzureTablePropertie
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import com.doanduyhai.azure.spring_config.Constants;
+import com.microsoft.azure.storage.table.TablePayloadFormat;
+
 @ConfigurationProperties(prefix = PREFIX)
 public class AzureTableProperties {
     public static final String PREFIX = "azure.table";
@@ -24,11 +27,109 @@ public class AzureTableProperties {
 
     private Boolean enabled;
     private Boolean name;
+    private boolean snapshotEnabled = false;
+    private boolean keyFilterEnabled = false;
+    private long refreshInterval = Constants.DEFAULT_REFRESH_INTERVAL_MS;
+    private int reconcileEvery = 10;
+    private int scanParallelism = 4;
+    private TablePayloadFormat payloadFormat = TablePayloadFormat.JsonFullMetadata;
+    private String localCacheFile;
+    private String localCacheEncryptionKey;
+    private long localCacheMaxStaleness = Constants.DEFAULT_LOCAL_CACHE_MAX_STALENESS_MS;
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    public void setSnapshotEnabled(boolean snapshotEnabled) {
+        this.snapshotEnabled = snapshotEnabled;
+    }
+
+    public boolean isKeyFilterEnabled() {
+        return keyFilterEnabled;
+    }
+
+    public void setKeyFilterEnabled(boolean keyFilterEnabled) {
+        this.keyFilterEnabled = keyFilterEnabled;
+    }
+
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public int getReconcileEvery() {
+        return reconcileEvery;
+    }
+
+    public void setReconcileEvery(int reconcileEvery) {
+        this.reconcileEvery = reconcileEvery;
+    }
+
+    public int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    public void setScanParallelism(int scanParallelism) {
+        this.scanParallelism = scanParallelism;
+    }
+
+    public TablePayloadFormat getPayloadFormat() {
+        return payloadFormat;
+    }
+
+    public void setPayloadFormat(TablePayloadFormat payloadFormat) {
+        this.payloadFormat = payloadFormat;
+    }
+
+    public String getLocalCacheFile() {
+        return localCacheFile;
+    }
+
+    public void setLocalCacheFile(String localCacheFile) {
+        this.localCacheFile = localCacheFile;
+    }
+
+    public String getLocalCacheEncryptionKey() {
+        return localCacheEncryptionKey;
+    }
+
+    public void setLocalCacheEncryptionKey(String localCacheEncryptionKey) {
+        this.localCacheEncryptionKey = localCacheEncryptionKey;
+    }
+
+    public long getLocalCacheMaxStaleness() {
+        return localCacheMaxStaleness;
+    }
+
+    public void setLocalCacheMaxStaleness(long localCacheMaxStaleness) {
+        this.localCacheMaxStaleness = localCacheMaxStaleness;
+    }
 
     public enum Property {
         STORAGE_ACCOUNT_NAME("storage-account-name"),
         TABLE_NAME("table-name"),
-        ENABLED("enabled");
+        ENABLED("enabled"),
+        SNAPSHOT_ENABLED("snapshot-enabled"),
+        KEY_FILTER_ENABLED("key-filter-enabled"),
+        REFRESH_INTERVAL("refresh-interval"),
+        RECONCILE_EVERY("reconcile-every"),
+        SCAN_PARALLELISM("scan-parallelism"),
+        PAYLOAD_FORMAT("payload-format"),
+        LOCAL_CACHE_FILE("local-cache-file"),
+        LOCAL_CACHE_ENCRYPTION_KEY("local-cache-encryption-key"),
+        LOCAL_CACHE_MAX_STALENESS("local-cache-max-staleness");
 
         private final String name;
 
@@ -0,0 +1,210 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.azure_table;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import com.microsoft.azure.storage.table.DynamicTableEntity;
+import com.microsoft.azure.storage.table.EdmType;
+import com.microsoft.azure.storage.table.EntityProperty;
+import com.microsoft.azure.storage.table.TableRequestOptions;
+
+/**
+ * Column types used to decode {@link DynamicTableEntity} fetched with
+ * {@link com.microsoft.azure.storage.table.TablePayloadFormat#JsonNoMetadata}.
+ * <br/>
+ * Without metadata, the responses do not carry the EDM type of the columns anymore. This resolver
+ * learns the types of the columns of each partition from the entities fetched with
+ * full metadata and caches them.
+ * <br/>
+ * <br/>
+ * Each read without metadata goes through its own {@link Session}. A column which has not been learnt,
+ * or whose value does not match the learnt type, is <strong>not</strong> silently decoded as a String:
+ * the session records its partition as mismatched so that the caller can {@link #forget(String)} it
+ * and read it again with full metadata.
+ * <br/>
+ * Without metadata, a number or a boolean cannot be told from a string holding the same text. A column learnt as
+ * a String whose value now looks like a number or a boolean is therefore flagged as mismatched, unless its learnt
+ * value already looked like one, so that a column of numeric strings is only read again once
+ */
+public class EdmTypeResolver {
+
+    private static final Pattern NUMBER_OR_BOOLEAN = Pattern.compile("-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?|true|false");
+
+    private final Map<String, Map<String, EdmType>> typesByPartition = new ConcurrentHashMap<>();
+
+    /**
+     * String columns of each partition whose learnt value looks like a number or a boolean
+     */
+    private final Map<String, Set<String>> numberLikeStringColumns = new ConcurrentHashMap<>();
+
+    /**
+     * Learn the EDM types of the columns of the given entity. Several entities of the same partition
+     * may be learnt, their columns are merged and the type of an already known column is overwritten
+     * @param entity entity fetched with full metadata
+     */
+    public void learn(DynamicTableEntity entity) {
+        Map<String, EdmType> columnTypes = new HashMap<>();
+        Set<String> numberLikeColumns = new HashSet<>();
+        for (Map.Entry<String, EntityProperty> entry : entity.getProperties().entrySet()) {
+            EntityProperty property = entry.getValue();
+            columnTypes.put(entry.getKey(), property.getEdmType());
+            if (property.getEdmType() == EdmType.STRING && looksLikeNumberOrBoolean(property.getValueAsString())) {
+                numberLikeColumns.add(entry.getKey());
+            }
+        }
+        numberLikeStringColumns.computeIfAbsent(entity.getPartitionKey(), partitionKey -> ConcurrentHashMap.newKeySet())
+                .addAll(numberLikeColumns);
+        typesByPartition.merge(entity.getPartitionKey(), Collections.unmodifiableMap(columnTypes), (known, learnt) -> {
+            Map<String, EdmType> merged = new HashMap<>(known);
+            merged.putAll(learnt);
+            return Collections.unmodifiableMap(merged);
+        });
+    }
+
+    /**
+     * Drop the column types learnt for the given partition, so that they are learnt again
+     * from scratch by the next read with full metadata
+     * @param partitionKey the partition key
+     */
+    public void forget(String partitionKey) {
+        typesByPartition.remove(partitionKey);
+        numberLikeStringColumns.remove(partitionKey);
+    }
+
+    /**
+     * Whether the column types of the given partition have already been learnt
+     * @param partitionKey the partition key
+     * @return true if the partition is known
+     */
+    public boolean knows(String partitionKey) {
+        return typesByPartition.containsKey(partitionKey);
+    }
+
+    /**
+     * Whether nothing has been learnt yet
+     * @return true if no partition is known
+     */
+    public boolean isEmpty() {
+        return typesByPartition.isEmpty();
+    }
+
+    /**
+     * Start a read without metadata
+     * @return a new session, to be used as property resolver of a single read
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * Property resolver of a single read without metadata. It records the partitions
+     * whose columns could not be resolved from the learnt types
+     */
+    public class Session implements TableRequestOptions.PropertyResolver {
+
+        private final Set<String> mismatchedPartitions = ConcurrentHashMap.newKeySet();
+        private final Set<String> resolvedPartitions = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Whether at least one column of the read could not be resolved. The decoded entities
+         * should then be discarded
+         * @return true if a mismatch has been detected
+         */
+        public boolean hasMismatches() {
+            return !mismatchedPartitions.isEmpty();
+        }
+
+        /**
+         * @return the partitions having an unknown column or a value not matching its learnt type
+         */
+        public Set<String> getMismatchedPartitions() {
+            return Collections.unmodifiableSet(mismatchedPartitions);
+        }
+
+        /**
+         * @return the partitions whose columns have been resolved so far, to forget if the read fails to decode them
+         */
+        public Set<String> getResolvedPartitions() {
+            return Collections.unmodifiableSet(resolvedPartitions);
+        }
+
+        @Override
+        public EdmType propertyResolver(String partitionKey, String rowKey, String propertyName, String propertyValue) {
+            resolvedPartitions.add(partitionKey);
+            Map<String, EdmType> columnTypes = typesByPartition.get(partitionKey);
+            EdmType edmType = columnTypes == null ? null : columnTypes.get(propertyName);
+            if (edmType == null || !matches(partitionKey, propertyName, edmType, propertyValue)) {
+                mismatchedPartitions.add(partitionKey);
+                // The value must still be decodable for the SDK to complete the read, it is thrown away anyway
+                return EdmType.STRING;
+            }
+            return edmType;
+        }
+    }
+
+    private boolean matches(String partitionKey, String propertyName, EdmType edmType, String value) {
+        if (value == null) {
+            return true;
+        }
+        try {
+            switch (edmType) {
+                case BOOLEAN:
+                    return "true".equals(value) || "false".equals(value);
+                case INT32:
+                    Integer.parseInt(value);
+                    return true;
+                case INT64:
+                    Long.parseLong(value);
+                    return true;
+                case DOUBLE:
+                    Double.parseDouble(value);
+                    return true;
+                case GUID:
+                    UUID.fromString(value);
+                    return true;
+                case DATE_TIME:
+                    OffsetDateTime.parse(value);
+                    return true;
+                case BINARY:
+                    Base64.getDecoder().decode(value);
+                    return true;
+                case STRING:
+                    if (!looksLikeNumberOrBoolean(value)) {
+                        return true;
+                    }
+                    Set<String> numberLikeColumns = numberLikeStringColumns.get(partitionKey);
+                    return numberLikeColumns != null && numberLikeColumns.contains(propertyName);
+                default:
+                    return true;
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static boolean looksLikeNumberOrBoolean(String value) {
+        return value != null && NUMBER_OR_BOOLEAN.matcher(value).matches();
+    }
+}
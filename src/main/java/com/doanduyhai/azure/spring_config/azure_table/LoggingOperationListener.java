@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.azure_table;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.microsoft.azure.storage.OperationContext;
+
+/**
+ * {@link OperationListener} logging the diagnostics of each operation at DEBUG level.
+ * At TRACE level, the Azure SDK request logging is also enabled on the operation context
+ */
+public class LoggingOperationListener implements OperationListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoggingOperationListener.class);
+
+    /**
+     * Whether logging is enabled for this listener, to avoid registering it needlessly
+     * @return true if the DEBUG level is enabled
+     */
+    public static boolean isEnabled() {
+        return LOG.isDebugEnabled();
+    }
+
+    @Override
+    public void onOperationStarted(String operation, OperationContext operationContext) {
+        if (LOG.isTraceEnabled()) {
+            operationContext.setLoggingEnabled(true);
+            operationContext.setLogger(LOG);
+        }
+    }
+
+    @Override
+    public void onOperationCompleted(OperationDiagnostics diagnostics) {
+        LOG.debug("Azure table operation {}", diagnostics);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.azure_table;
+
+import static java.lang.String.format;
+
+/**
+ * Request-level diagnostics of a single storage operation, reported to {@link OperationListener}
+ */
+public class OperationDiagnostics {
+
+    public static final String CREATE_TABLE = "createTableIfNotExists";
+    public static final String DROP_TABLE = "dropTableIfExists";
+    public static final String INSERT_OR_REPLACE = "insertOrReplace";
+    public static final String INSERT_IF_NOT_EXISTS = "insertIfNotExists";
+    public static final String INSERT_OR_MERGE = "insertOrMerge";
+    public static final String ATOMIC_UPDATE = "atomicUpdate";
+    public static final String FIND_BY_ID = "findById";
+    public static final String DELETE = "delete";
+    public static final String BATCH = "batch";
+    public static final String PARTITION_QUERY = "partitionQuery";
+    public static final String FILTER_QUERY = "filterQuery";
+    public static final String FULL_SCAN_PAGE = "fullScanPage";
+    public static final String KEYS_PAGE = "keysPage";
+    public static final String QUERY_PAGE = "queryPage";
+
+    private final String tableName;
+    private final String operation;
+    private final long durationNanos;
+    private final long serviceLatencyMs;
+    private final int retryCount;
+    private final int throttledCount;
+    private final long bytesReceived;
+    private final String requestId;
+    private final int statusCode;
+    private final Exception exception;
+
+    public OperationDiagnostics(String tableName, String operation, long durationNanos, long serviceLatencyMs,
+                                int retryCount, int throttledCount, long bytesReceived, String requestId, int statusCode,
+                                Exception exception) {
+        this.tableName = tableName;
+        this.operation = operation;
+        this.durationNanos = durationNanos;
+        this.serviceLatencyMs = serviceLatencyMs;
+        this.retryCount = retryCount;
+        this.throttledCount = throttledCount;
+        this.bytesReceived = bytesReceived;
+        this.requestId = requestId;
+        this.statusCode = statusCode;
+        this.exception = exception;
+    }
+
+    /**
+     * @return the name of the table
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return the operation name, e.g. <em>findById</em> or <em>fullScanPage</em>
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the wall-clock duration of the operation seen by the caller, retries included
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the sum of the durations of the HTTP requests sent for this operation
+     */
+    public long getServiceLatencyMs() {
+        return serviceLatencyMs;
+    }
+
+    /**
+     * @return the number of retries
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * @return the number of HTTP requests rejected by the service because of throttling (503 Server Busy)
+     */
+    public int getThrottledCount() {
+        return throttledCount;
+    }
+
+    /**
+     * @return the number of bytes received, as announced by the Content-Length of the responses
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return the service request id of the last HTTP request, or null
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return the HTTP status code of the last HTTP request, or 0 if none
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the exception raised by the operation, or null if it succeeded
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return format("[table: %s, operation: %s, durationMs: %d, serviceLatencyMs: %d, retries: %d, throttled: %d, bytesReceived: %d, requestId: %s, status: %d, success: %s]",
+                tableName, operation, durationNanos / 1_000_000, serviceLatencyMs, retryCount, throttledCount, bytesReceived, requestId, statusCode, isSuccess());
+    }
+}
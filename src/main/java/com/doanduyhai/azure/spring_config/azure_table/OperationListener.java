@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.azure_table;
+
+import com.microsoft.azure.storage.OperationContext;
+
+/**
+ * Listener notified of every storage operation executed by an {@link AzureTableDao}.
+ * <br/>
+ * Each operation runs with its own {@link OperationContext}, so listeners may customize it,
+ * for example to enable the Azure SDK request logging, and receive its diagnostics once done
+ */
+public interface OperationListener {
+
+    /**
+     * Called before the operation is sent, with the fresh context of the operation
+     * @param operation the operation name
+     * @param operationContext the context of this operation only
+     */
+    default void onOperationStarted(String operation, OperationContext operationContext) {
+    }
+
+    /**
+     * Called once the operation has completed, successfully or not
+     * @param diagnostics the diagnostics of the operation
+     */
+    void onOperationCompleted(OperationDiagnostics diagnostics);
+}
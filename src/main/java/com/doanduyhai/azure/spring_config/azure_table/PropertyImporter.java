@@ -0,0 +1,358 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.azure_table;
+
+import static com.doanduyhai.azure.spring_config.azure_table.PropertyValueDao.COLLECTION_INDEX_PREFIX;
+import static com.doanduyhai.azure.spring_config.azure_table.PropertyValueDao.PROPERTY_VALUE_ROW_KEY;
+import static com.doanduyhai.azure.spring_config.azure_table.PropertyValueDao.VALUE_COLUMN;
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.boot.origin.OriginTrackedValue;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+
+import com.doanduyhai.azure.spring_config.utils.Validator;
+import com.microsoft.azure.storage.table.DynamicTableEntity;
+import com.microsoft.azure.storage.table.EntityProperty;
+
+/**
+ * Import a Spring <em>.properties</em> or <em>.yml</em> file into the Azure table, using the layout read by
+ * {@link AzureTableOperation#getProperty(String)}:
+ * <ul>
+ *     <li>simple property: one <em>value</em> column</li>
+ *     <li>list property (<em>app.myList[0]</em>, <em>app.myList[1]</em>...): one <em>_0</em>, <em>_1</em>... column per element</li>
+ *     <li>map property declared with <em>mapProperties(String...)</em>: one column per map key</li>
+ * </ul>
+ * Other nested keys are flattened into dotted property names, e.g. <em>app.myOauth2Config.dev.clientId</em>
+ * <br/>
+ * <br/>
+ * The file is diffed against the current content of the table and only the new, changed and, if
+ * <em>deleteMissing(true)</em>, removed properties are written, using entity group batches run in parallel.
+ * Values are compared by their string representation. Updates and deletes are conditional on the ETag read
+ * during the diff, so a property modified concurrently is reported as failed instead of being overwritten
+ * <br/>
+ * <br/>
+ * <pre class="code"><code class="java">
+ *     PropertyImporter.ImportResult result = new PropertyImporter(propertyValueDao)
+ *          .mapProperties("app.myMap")
+ *          .importFile(Paths.get("config/backend.yml"));
+ * </code></pre>
+ */
+public class PropertyImporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PropertyImporter.class);
+    private static final Pattern LIST_ELEMENT = Pattern.compile("^(.+)\\[(\\d+)]$");
+    private static final Pattern DISALLOWED_KEY_CHARACTERS = Pattern.compile("[/#?\\\\\\p{Cntrl}]");
+    private static final Pattern COLUMN_NAME = Pattern.compile("^[A-Za-z_][A-Za-z0-9_]{0,254}$");
+    private static final List<String> RESERVED_COLUMNS = Arrays.asList("PartitionKey", "RowKey", "Timestamp");
+    private static final int DEFAULT_PARALLELISM = 16;
+
+    private final PropertyValueDao propertyValueDao;
+    private Set<String> mapProperties = new TreeSet<>();
+    private boolean deleteMissing = false;
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    public PropertyImporter(PropertyValueDao propertyValueDao) {
+        Validator.validateNotNull(propertyValueDao, "propertyValueDao");
+        this.propertyValueDao = propertyValueDao;
+    }
+
+    /**
+     * Declare the properties to be stored as map entities, one column per map key.
+     * The map keys should be valid column names
+     * @param propertyNames the map property names
+     * @return
+     */
+    public PropertyImporter mapProperties(String... propertyNames) {
+        this.mapProperties = new TreeSet<>(Arrays.asList(propertyNames));
+        return this;
+    }
+
+    /**
+     * Whether the properties of the table absent from the imported file should be deleted. Default false
+     * @param deleteMissing true to delete the missing properties
+     * @return
+     */
+    public PropertyImporter deleteMissing(boolean deleteMissing) {
+        this.deleteMissing = deleteMissing;
+        return this;
+    }
+
+    /**
+     * Set the number of partitions written concurrently
+     * @param parallelism number of concurrent batches
+     * @return
+     */
+    public PropertyImporter parallelism(int parallelism) {
+        Validator.validateTrue(parallelism > 0, "The provided parallelism should be strictly positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Import a <em>.properties</em>, <em>.yml</em> or <em>.yaml</em> file.
+     * Multi-document YAML files are merged, later documents overriding earlier ones
+     * @param file the file to import
+     * @return the import result
+     */
+    public ImportResult importFile(Path file) {
+        Validator.validateNotNull(file, "file");
+        String fileName = file.getFileName().toString();
+        PropertySourceLoader loader = Stream.of(new PropertiesPropertySourceLoader(), new YamlPropertySourceLoader())
+                .filter(candidate -> Stream.of(candidate.getFileExtensions()).anyMatch(extension -> fileName.endsWith("." + extension)))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(format("Unsupported file '%s', expecting .properties, .yml or .yaml", file)));
+
+        Map<String, Object> flattenedProperties = new LinkedHashMap<>();
+        try {
+            for (PropertySource<?> propertySource : loader.load(fileName, new FileSystemResource(file))) {
+                EnumerablePropertySource<?> enumerableSource = (EnumerablePropertySource<?>) propertySource;
+                for (String name : enumerableSource.getPropertyNames()) {
+                    Object value = enumerableSource.getProperty(name);
+                    flattenedProperties.put(name, value instanceof OriginTrackedValue ? ((OriginTrackedValue) value).getValue() : value);
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(format("Cannot read the file '%s'", file), ex);
+        }
+        return importProperties(flattenedProperties);
+    }
+
+    /**
+     * Import flattened properties, list elements being suffixed by their index like <em>app.myList[0]</em>
+     * @param flattenedProperties the properties, by name
+     * @return the import result
+     */
+    public ImportResult importProperties(Map<String, Object> flattenedProperties) {
+        Validator.validateNotNull(flattenedProperties, "flattenedProperties");
+        ImportResult result = new ImportResult();
+        Set<String> rejectedProperties = new TreeSet<>();
+        Map<String, DynamicTableEntity> expectedEntities = toEntities(flattenedProperties, rejectedProperties, result);
+
+        Map<String, DynamicTableEntity> currentEntities;
+        try (Stream<DynamicTableEntity> stream = propertyValueDao
+                .filterQuery(new AzureTableDao.GenericFilter("RowKey", AzureTableDao.Comp.eq, PROPERTY_VALUE_ROW_KEY))
+                .stream()) {
+            currentEntities = stream.collect(Collectors.toMap(DynamicTableEntity::getPartitionKey, entity -> entity));
+        }
+
+        List<DynamicTableEntity> inserts = new ArrayList<>();
+        List<DynamicTableEntity> updates = new ArrayList<>();
+        for (DynamicTableEntity expected : expectedEntities.values()) {
+            DynamicTableEntity current = currentEntities.get(expected.getPartitionKey());
+            if (current == null) {
+                inserts.add(expected);
+            } else if (!sameColumns(current, expected)) {
+                expected.setEtag(current.getEtag());
+                updates.add(expected);
+            } else {
+                result.unchanged++;
+            }
+        }
+        List<DynamicTableEntity> deletes = deleteMissing
+                ? currentEntities.values()
+                    .stream()
+                    .filter(current -> !expectedEntities.containsKey(current.getPartitionKey()))
+                    .filter(current -> !rejectedProperties.contains(current.getPartitionKey()))
+                    .collect(Collectors.toList())
+                : new ArrayList<>();
+
+        AzureTableDao<DynamicTableEntity>.CRUD crud = propertyValueDao.crud();
+        result.inserted = collect(crud.batch(AzureTableDao.BatchOperationType.INSERT, inserts, parallelism), result);
+        result.updated = collect(crud.batch(AzureTableDao.BatchOperationType.REPLACE, updates, parallelism), result);
+        result.deleted = collect(crud.batch(AzureTableDao.BatchOperationType.DELETE, deletes, parallelism), result);
+        LOG.info("Imported properties into the Azure table: {}", result);
+        return result;
+    }
+
+    /**
+     * Group the flattened properties by partition key. A partition key fed by several kinds of names, e.g.
+     * <em>app.myList=x</em> and <em>app.myList[0]=y</em>, cannot be stored as a single entity: all its names are
+     * reported as failed and its partition key added to <em>rejectedProperties</em>, so that it is not deleted either
+     */
+    private Map<String, DynamicTableEntity> toEntities(Map<String, Object> flattenedProperties, Set<String> rejectedProperties,
+                                                       ImportResult result) {
+        Map<String, HashMap<String, EntityProperty>> columnsByProperty = new LinkedHashMap<>();
+        Map<String, PropertyKind> kindByProperty = new HashMap<>();
+        Map<String, List<String>> namesByProperty = new HashMap<>();
+        for (Map.Entry<String, Object> entry : flattenedProperties.entrySet()) {
+            String name = entry.getKey();
+            String propertyName = name;
+            String column = VALUE_COLUMN;
+            PropertyKind kind = PropertyKind.SIMPLE;
+
+            Matcher listElement = LIST_ELEMENT.matcher(name);
+            String mapProperty = findMapProperty(name);
+            if (listElement.matches()) {
+                propertyName = listElement.group(1);
+                column = COLLECTION_INDEX_PREFIX + Integer.parseInt(listElement.group(2));
+                kind = PropertyKind.LIST;
+            } else if (mapProperty != null) {
+                propertyName = mapProperty;
+                kind = PropertyKind.MAP;
+                column = name.substring(mapProperty.length() + 1);
+                if (!COLUMN_NAME.matcher(column).matches() || RESERVED_COLUMNS.contains(column)) {
+                    result.failures.add(Pair.of(name, new IllegalArgumentException(format("'%s' is not a valid column name", column))));
+                    continue;
+                }
+            }
+            if (DISALLOWED_KEY_CHARACTERS.matcher(propertyName).find() || propertyName.length() > 1024) {
+                result.failures.add(Pair.of(name, new IllegalArgumentException(format("'%s' is not a valid partition key", propertyName))));
+                continue;
+            }
+            PropertyKind previousKind = kindByProperty.putIfAbsent(propertyName, kind);
+            if (previousKind != null && previousKind != kind) {
+                rejectedProperties.add(propertyName);
+            }
+            namesByProperty.computeIfAbsent(propertyName, key -> new ArrayList<>()).add(name);
+            columnsByProperty
+                    .computeIfAbsent(propertyName, key -> new HashMap<>())
+                    .put(column, toEntityProperty(entry.getValue()));
+        }
+
+        for (String propertyName : rejectedProperties) {
+            columnsByProperty.remove(propertyName);
+            List<String> names = namesByProperty.get(propertyName);
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    format("The property '%s' is declared with conflicting shapes: %s", propertyName, names));
+            names.forEach(name -> result.failures.add(Pair.of(name, exception)));
+        }
+
+        Map<String, DynamicTableEntity> entities = new LinkedHashMap<>();
+        columnsByProperty.forEach((propertyName, columns) ->
+                entities.put(propertyName, new DynamicTableEntity(propertyName, PROPERTY_VALUE_ROW_KEY, columns)));
+        return entities;
+    }
+
+    /**
+     * Find the declared map property owning the given name, the map key being the rest of the name
+     */
+    private String findMapProperty(String name) {
+        for (String mapProperty : mapProperties) {
+            if (name.startsWith(mapProperty + ".") && name.length() > mapProperty.length() + 1) {
+                return mapProperty;
+            }
+        }
+        return null;
+    }
+
+    private static EntityProperty toEntityProperty(Object value) {
+        if (value instanceof Integer) {
+            return new EntityProperty((Integer) value);
+        } else if (value instanceof Long) {
+            return new EntityProperty((Long) value);
+        } else if (value instanceof Double) {
+            return new EntityProperty((Double) value);
+        } else if (value instanceof Boolean) {
+            return new EntityProperty((Boolean) value);
+        } else if (value instanceof Date) {
+            return new EntityProperty((Date) value);
+        } else if (value instanceof byte[]) {
+            return new EntityProperty((byte[]) value);
+        } else {
+            return new EntityProperty(value != null ? value.toString() : StringUtils.EMPTY);
+        }
+    }
+
+    private static boolean sameColumns(DynamicTableEntity current, DynamicTableEntity expected) {
+        Map<String, EntityProperty> currentColumns = current.getProperties();
+        Map<String, EntityProperty> expectedColumns = expected.getProperties();
+        if (!currentColumns.keySet().equals(expectedColumns.keySet())) {
+            return false;
+        }
+        return expectedColumns.entrySet()
+                .stream()
+                .allMatch(entry -> Objects.equals(entry.getValue().getValueAsString(), currentColumns.get(entry.getKey()).getValueAsString()));
+    }
+
+    private static int collect(AzureTableDao.BatchResult<DynamicTableEntity> batchResult, ImportResult result) {
+        for (Pair<DynamicTableEntity, Exception> failure : batchResult.getFailures()) {
+            result.failures.add(Pair.of(failure.getKey().getPartitionKey(), failure.getValue()));
+        }
+        return batchResult.getSucceeded().size();
+    }
+
+    /**
+     * Shape of a property in the imported file, deciding the columns of its entity
+     */
+    private enum PropertyKind {
+        SIMPLE, LIST, MAP
+    }
+
+    /**
+     * Result of an import: number of properties written per operation and the failed properties with their exception
+     */
+    public static class ImportResult {
+        private int inserted;
+        private int updated;
+        private int deleted;
+        private int unchanged;
+        private final List<Pair<String, Exception>> failures = new ArrayList<>();
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getDeleted() {
+            return deleted;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public List<Pair<String, Exception>> getFailures() {
+            return failures;
+        }
+
+        public boolean isSuccess() {
+            return failures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return format("[inserted: %d, updated: %d, deleted: %d, unchanged: %d, failures: %d]",
+                    inserted, updated, deleted, unchanged, failures.size());
+        }
+    }
+}
@@ -14,11 +14,31 @@
 package com.doanduyhai.azure.spring_config.azure_table;
 
 import com.microsoft.azure.storage.table.DynamicTableEntity;
+import com.microsoft.azure.storage.table.TablePayloadFormat;
 
 public class PropertyValueDao extends AzureTableDao<DynamicTableEntity> {
 
+    /**
+     * Row key of the entity holding the value of a property, the partition key being the property name
+     */
+    public static final String PROPERTY_VALUE_ROW_KEY = "propertyValue";
+
+    /**
+     * Column holding the value of a simple property
+     */
+    public static final String VALUE_COLUMN = "value";
+
+    /**
+     * Prefix of the columns holding the elements of a list property, followed by the element index
+     */
+    public static final String COLLECTION_INDEX_PREFIX = "_";
+
     public PropertyValueDao(String storageConnectionString, String tableName) {
         super(DynamicTableEntity.class, storageConnectionString, tableName);
     }
 
+    public PropertyValueDao(String storageConnectionString, String tableName, TablePayloadFormat payloadFormat) {
+        super(DynamicTableEntity.class, storageConnectionString, tableName, payloadFormat);
+    }
+
 }
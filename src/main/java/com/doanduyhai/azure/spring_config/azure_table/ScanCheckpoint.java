@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.azure_table;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import com.microsoft.azure.storage.ResultContinuation;
+import com.microsoft.azure.storage.ResultContinuationType;
+import com.microsoft.azure.storage.StorageLocation;
+
+/**
+ * Progress of a resumable scan, persisted as a properties file.
+ * <br/>
+ * The checkpoint holds the number of segments already handed to the handler and the serialized
+ * {@link ResultContinuation} of the next segment. The file is written to a temporary file first then moved
+ * over the previous checkpoint, so that a crash while saving never leaves a truncated checkpoint
+ */
+class ScanCheckpoint {
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String NEXT_SEGMENT = "nextSegment";
+    private static final String CONTINUATION_TYPE = "continuation.type";
+    private static final String NEXT_PARTITION_KEY = "continuation.nextPartitionKey";
+    private static final String NEXT_ROW_KEY = "continuation.nextRowKey";
+    private static final String NEXT_TABLE_NAME = "continuation.nextTableName";
+    private static final String NEXT_MARKER = "continuation.nextMarker";
+    private static final String TARGET_LOCATION = "continuation.targetLocation";
+
+    private final String fingerprint;
+    private final long nextSegment;
+    private final ResultContinuation continuationToken;
+
+    ScanCheckpoint(String fingerprint, long nextSegment, ResultContinuation continuationToken) {
+        this.fingerprint = fingerprint;
+        this.nextSegment = nextSegment;
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * @return the description of the scanned query, to avoid resuming a different scan
+     */
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the number of the next segment to be handled
+     */
+    long getNextSegment() {
+        return nextSegment;
+    }
+
+    /**
+     * @return the continuation token of the next segment
+     */
+    ResultContinuation getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Load the checkpoint
+     * @param checkpointFile checkpoint file
+     * @return the checkpoint, null if the file does not exist
+     */
+    static ScanCheckpoint load(Path checkpointFile) {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(checkpointFile)) {
+            properties.load(input);
+        } catch (IOException ex) {
+            throw new RuntimeException(format("Cannot read the scan checkpoint '%s'", checkpointFile), ex);
+        }
+
+        ResultContinuation continuationToken = new ResultContinuation();
+        continuationToken.setContinuationType(ResultContinuationType.valueOf(properties.getProperty(CONTINUATION_TYPE)));
+        continuationToken.setNextPartitionKey(properties.getProperty(NEXT_PARTITION_KEY));
+        continuationToken.setNextRowKey(properties.getProperty(NEXT_ROW_KEY));
+        continuationToken.setNextTableName(properties.getProperty(NEXT_TABLE_NAME));
+        continuationToken.setNextMarker(properties.getProperty(NEXT_MARKER));
+        String targetLocation = properties.getProperty(TARGET_LOCATION);
+        if (targetLocation != null) {
+            continuationToken.setTargetLocation(StorageLocation.valueOf(targetLocation));
+        }
+        return new ScanCheckpoint(properties.getProperty(FINGERPRINT),
+                Long.parseLong(properties.getProperty(NEXT_SEGMENT)),
+                continuationToken);
+    }
+
+    /**
+     * Save the checkpoint, replacing the previous one
+     * @param checkpointFile checkpoint file
+     */
+    void save(Path checkpointFile) {
+        Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT, fingerprint);
+        properties.setProperty(NEXT_SEGMENT, String.valueOf(nextSegment));
+        properties.setProperty(CONTINUATION_TYPE, continuationToken.getContinuationType().name());
+        setIfNotNull(properties, NEXT_PARTITION_KEY, continuationToken.getNextPartitionKey());
+        setIfNotNull(properties, NEXT_ROW_KEY, continuationToken.getNextRowKey());
+        setIfNotNull(properties, NEXT_TABLE_NAME, continuationToken.getNextTableName());
+        setIfNotNull(properties, NEXT_MARKER, continuationToken.getNextMarker());
+        if (continuationToken.getTargetLocation() != null) {
+            properties.setProperty(TARGET_LOCATION, continuationToken.getTargetLocation().name());
+        }
+
+        Path absoluteFile = checkpointFile.toAbsolutePath();
+        try {
+            Files.createDirectories(absoluteFile.getParent());
+            Path tempFile = Files.createTempFile(absoluteFile.getParent(), absoluteFile.getFileName().toString(), ".tmp");
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                properties.store(output, "Azure table scan checkpoint");
+            }
+            try {
+                Files.move(tempFile, absoluteFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(format("Cannot write the scan checkpoint '%s'", checkpointFile), ex);
+        }
+    }
+
+    private static void setIfNotNull(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+}
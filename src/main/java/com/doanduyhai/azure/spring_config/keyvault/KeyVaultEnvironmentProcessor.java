@@ -17,6 +17,7 @@ import static com.doanduyhai.azure.spring_config.Constants.*;
 import static java.lang.String.format;
 import static org.springframework.core.env.StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME;
 
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -26,14 +27,17 @@ import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.logging.DeferredLog;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
 
 import com.azure.core.credential.TokenCredential;
 import com.azure.core.http.policy.HttpLogOptions;
 import com.azure.identity.ManagedIdentityCredentialBuilder;
+import com.azure.security.keyvault.secrets.SecretAsyncClient;
 import com.azure.security.keyvault.secrets.SecretClient;
 import com.azure.security.keyvault.secrets.SecretClientBuilder;
 import com.azure.security.keyvault.secrets.models.KeyVaultSecret;
 import com.doanduyhai.azure.spring_config.keyvault.KeyVaultProperties.Property;
+import com.doanduyhai.azure.spring_config.utils.LocalSnapshotFile;
 import com.doanduyhai.azure.spring_config.utils.Validator;
 
 /**
@@ -47,26 +51,44 @@ public class KeyVaultEnvironmentProcessor {
     private final ConfigurableEnvironment environment;
     private final String vaultUri;
     private final SecretClient secretClient;
+    private final SecretAsyncClient secretAsyncClient;
     private final DeferredLog logger;
+    private volatile KeyVaultOperation keyVaultOperation;
 
     public KeyVaultEnvironmentProcessor(DeferredLog logger, final ConfigurableEnvironment environment) {
         this.environment = environment;
         Validator.validateNotNull(environment, "Spring configurable environment");
         vaultUri = getPropertyValue(Property.URI);
         Validator.validateNotBlank(vaultUri, AZURE_KEYVAULT_URI);
-        secretClient = new SecretClientBuilder()
+        final SecretClientBuilder secretClientBuilder = new SecretClientBuilder()
                 .vaultUrl(vaultUri)
                 .credential(MSI_TOKEN_CREDENTIALS)
-                .httpLogOptions(new HttpLogOptions().setApplicationId(AZURE_SPRING_KEY_VAULT))
-                .buildClient();
+                .httpLogOptions(new HttpLogOptions().setApplicationId(AZURE_SPRING_KEY_VAULT));
+        secretClient = secretClientBuilder.buildClient();
+        secretAsyncClient = Boolean.parseBoolean(getPropertyValue(Property.REACTIVE_ENABLED))
+                ? secretClientBuilder.buildAsyncClient()
+                : null;
         this.logger = logger;
     }
 
     public void addKeyVaultPropertySource() {
-        logger.info(format("Adding Azure key vault '%s' as a Spring property source", vaultUri));
+        registerKeyVaultPropertySource(createKeyVaultPropertySource());
+    }
+
+    /**
+     * Load the key vault secrets into a new property source, without touching the environment.
+     * Safe to call from another thread than the one post-processing the environment.
+     *
+     * @return the key vault property source.
+     */
+    public KeyVaultPropertySource createKeyVaultPropertySource() {
+        logger.info(format("Loading the secrets of the Azure key vault '%s'", vaultUri));
         final Long refreshInterval = Optional.ofNullable(getPropertyValue(Property.REFRESH_INTERVAL))
                 .map(Long::valueOf)
                 .orElse(DEFAULT_REFRESH_INTERVAL_MS);
+        final int loadParallelism = Optional.ofNullable(getPropertyValue(Property.LOAD_PARALLELISM))
+                .map(Integer::valueOf)
+                .orElse(DEFAULT_KEYVAULT_LOAD_PARALLELISM);
         final List<String> secretKeys = Binder.get(this.environment)
                 .bind(
                         KeyVaultProperties.getPropertyName( Property.SECRET_KEYS),
@@ -75,42 +97,81 @@ public class KeyVaultEnvironmentProcessor {
                 .orElse(Collections.emptyList());
 
         try {
-            final MutablePropertySources sources = this.environment.getPropertySources();
             final boolean caseSensitive = Boolean
                     .parseBoolean(getPropertyValue(Property.CASE_SENSITIVE_KEYS));
-            final KeyVaultOperation keyVaultOperation = new KeyVaultOperation(
+            keyVaultOperation = new KeyVaultOperation(
                     secretClient,
+                    secretAsyncClient,
                     refreshInterval,
                     secretKeys,
-                    caseSensitive);
-
-            KeyVaultPropertySource keyVaultPropertySource =
-                    new KeyVaultPropertySource(AZURE_KEYVAULT_PROPERTYSOURCE_NAME, keyVaultOperation);
-            if (sources.contains(SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME)) {
-                sources.addAfter(
-                        SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME,
-                        keyVaultPropertySource
-                );
-            } else {
-                sources.addFirst(keyVaultPropertySource);
-            }
+                    caseSensitive,
+                    getLocalCache(),
+                    loadParallelism);
 
+            return new KeyVaultPropertySource(AZURE_KEYVAULT_PROPERTYSOURCE_NAME, keyVaultOperation);
         } catch (final Exception ex) {
             throw new IllegalStateException("Failed to configure KeyVault property source", ex);
         }
     }
 
+    /**
+     * Add the key vault property source to the environment.
+     *
+     * @param keyVaultPropertySource the key vault property source, or a stand-in while it loads.
+     */
+    public void registerKeyVaultPropertySource(PropertySource<?> keyVaultPropertySource) {
+        logger.info(format("Adding Azure key vault '%s' as a Spring property source", vaultUri));
+        final MutablePropertySources sources = this.environment.getPropertySources();
+        if (sources.contains(SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME)) {
+            sources.addAfter(
+                    SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME,
+                    keyVaultPropertySource
+            );
+        } else {
+            sources.addFirst(keyVaultPropertySource);
+        }
+    }
+
 
     public String getKeyVaultSecret(String secretName) {
         logger.info(format("Retrieving secret '%s' from Azure key vault '%s' ", secretName, vaultUri));
-        KeyVaultSecret secret = secretClient.getSecret(secretName);
-        return secret.getValue();
+        try {
+            KeyVaultSecret secret = secretClient.getSecret(secretName);
+            return secret.getValue();
+        } catch (RuntimeException ex) {
+            final String cachedValue = keyVaultOperation != null ? keyVaultOperation.getProperty(secretName) : null;
+            if (cachedValue == null) {
+                throw ex;
+            }
+            logger.warn(format("Cannot retrieve secret '%s' from Azure key vault '%s', using the loaded value instead", secretName, vaultUri), ex);
+            return cachedValue;
+        }
     }
 
     public String getVaultUri() {
         return vaultUri;
     }
 
+    private LocalSnapshotFile getLocalCache() {
+        final String localCacheFile = getPropertyValue(Property.LOCAL_CACHE_FILE);
+        if (localCacheFile == null) {
+            return null;
+        }
+        final String encryptionKey = getPropertyValue(Property.LOCAL_CACHE_ENCRYPTION_KEY);
+        if (encryptionKey == null) {
+            Validator.validateTrue(Boolean.parseBoolean(getPropertyValue(Property.LOCAL_CACHE_PLAINTEXT_ALLOWED)),
+                    format("The key vault local cache '%s' would store the secrets in clear, set '%s' or, to accept it, '%s=true'",
+                            localCacheFile,
+                            KeyVaultProperties.getPropertyName(Property.LOCAL_CACHE_ENCRYPTION_KEY),
+                            KeyVaultProperties.getPropertyName(Property.LOCAL_CACHE_PLAINTEXT_ALLOWED)));
+            logger.warn(format("The key vault local cache '%s' is not encrypted, the secrets are stored in clear", localCacheFile));
+        }
+        final long maxStaleness = Optional.ofNullable(getPropertyValue(Property.LOCAL_CACHE_MAX_STALENESS))
+                .map(Long::valueOf)
+                .orElse(DEFAULT_LOCAL_CACHE_MAX_STALENESS_MS);
+        return new LocalSnapshotFile(Paths.get(localCacheFile), encryptionKey, maxStaleness);
+    }
+
     private String getPropertyValue(final Property property) {
         return Optional.of(property)
                 .map(KeyVaultProperties::getPropertyName)
@@ -13,31 +13,66 @@
  */
 package com.doanduyhai.azure.spring_config.keyvault;
 
+import static com.doanduyhai.azure.spring_config.Constants.DEFAULT_KEYVAULT_LOAD_PARALLELISM;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.lang.NonNull;
 
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.exception.ResourceNotFoundException;
 import com.azure.core.http.rest.PagedResponse;
 import com.azure.core.util.paging.ContinuablePagedIterable;
+import com.azure.security.keyvault.secrets.SecretAsyncClient;
 import com.azure.security.keyvault.secrets.SecretClient;
 import com.azure.security.keyvault.secrets.models.KeyVaultSecret;
 import com.azure.security.keyvault.secrets.models.SecretProperties;
+import com.doanduyhai.azure.spring_config.metrics.ConfigMetrics;
+import com.doanduyhai.azure.spring_config.utils.LocalSnapshotFile;
+import com.doanduyhai.azure.spring_config.utils.PropertyNameCache;
+import com.doanduyhai.azure.spring_config.utils.RefreshScheduler;
+import com.doanduyhai.azure.spring_config.utils.Validator;
+import com.doanduyhai.azure.spring_config.utils.VersionedPropertyNames;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public class KeyVaultOperation {
 
     private static final Logger LOG = LoggerFactory.getLogger(KeyVaultOperation.class);
+    private static final Pattern KEY_VAULT_SECRET_NAME = Pattern.compile("[a-z0-9A-Z-]+");
+    private static final Pattern UPPER_SNAKE_CASE_NAME = Pattern.compile("[A-Z0-9_]+");
 
     /**
      * Stores the case sensitive flag.
@@ -45,9 +80,20 @@ public class KeyVaultOperation {
     private final boolean caseSensitive;
 
     /**
-     * Stores the properties.
+     * Stores the current secrets snapshot, replaced as a whole on each change so readers never see a partial update.
+     */
+    private volatile Snapshot snapshot = new Snapshot(0L, Collections.emptyMap(), Collections.emptyMap());
+
+    /**
+     * Stores the publisher of the {@link KeyVaultSecretsChangedEvent}, null until the application context is available.
+     */
+    private volatile ApplicationEventPublisher eventPublisher;
+    private volatile boolean closed = false;
+
+    /**
+     * Stores the property names, rebuilt only when the secret names change.
      */
-    private Map<String, String> properties = new HashMap<>();
+    private final VersionedPropertyNames propertyNames = new VersionedPropertyNames();
 
     /**
      * Stores the secret client.
@@ -59,6 +105,54 @@ public class KeyVaultOperation {
      */
     private final List<String> secretKeys;
 
+    /**
+     * Stores the metrics, no-op when Micrometer is absent.
+     */
+    private final ConfigMetrics metrics = ConfigMetrics.get();
+
+    /**
+     * Stores the last loaded secrets locally, null when disabled.
+     */
+    private final LocalSnapshotFile localCache;
+
+    /**
+     * Stores the translations of the relaxed property names to secret names.
+     */
+    private final PropertyNameCache secretNames = new PropertyNameCache(KeyVaultOperation::translateToKeyVaultSecretName);
+
+    private static final String LOCAL_CACHE_COLUMN = "value";
+    private static final String LOCAL_CACHE_VERSION_COLUMN = "version";
+    private static final String LOCAL_CACHE_UPDATED_ON_COLUMN = "updatedOn";
+
+    /**
+     * Stores the loaded secrets by secret name with their version, to only download the changed ones on refresh.
+     */
+    private volatile Map<String, LoadedSecret> loadedSecrets = Collections.emptyMap();
+
+    /**
+     * Stores the executor fetching the secrets, its threads stop when idle between refreshes.
+     */
+    private final ExecutorService loaderExecutor;
+
+    /**
+     * Stores the async secret client, null when the reactive loading is disabled.
+     */
+    private final SecretAsyncClient secretAsyncClient;
+
+    private final int loadParallelism;
+
+    private final AtomicBoolean asyncRefreshInProgress = new AtomicBoolean(false);
+
+    /**
+     * Stores the scheduled refresh, null when the refresh is disabled.
+     */
+    private final RefreshScheduler.ScheduledRefresh scheduledRefresh;
+
+    /**
+     * Reload of the secrets served from the local cache, null when not served from it or with the async client
+     */
+    private final Future<?> reconciliation;
+
     /**
      * Constructor.
      *
@@ -73,22 +167,97 @@ public class KeyVaultOperation {
         List<String> secretKeys,
         boolean caseSensitive
     ) {
+        this(secretClient, refreshInMillis, secretKeys, caseSensitive, null, DEFAULT_KEYVAULT_LOAD_PARALLELISM);
+    }
+
+    /**
+     * Constructor.
+     * <p>
+     * When a local cache is provided and holds a snapshot fresh enough, the secrets are served from it
+     * immediately and reloaded from the key vault in the background.
+     * </p>
+     *
+     * @param secretClient    the Key Vault secret client.
+     * @param refreshInMillis the refresh in milliseconds (0 or less disables refresh).
+     * @param secretKeys      the secret keys to look for.
+     * @param caseSensitive   the case sensitive flag.
+     * @param localCache      the last-known-good local copy of the secrets, may be null.
+     * @param loadParallelism the maximum number of secrets fetched concurrently.
+     */
+    public KeyVaultOperation(
+        final SecretClient secretClient,
+        final long refreshInMillis,
+        List<String> secretKeys,
+        boolean caseSensitive,
+        LocalSnapshotFile localCache,
+        int loadParallelism
+    ) {
+        this(secretClient, null, refreshInMillis, secretKeys, caseSensitive, localCache, loadParallelism);
+    }
+
+    /**
+     * Constructor.
+     * <p>
+     * When an async client is provided, the secrets are loaded through the reactive path: the secrets are
+     * listed as a {@link reactor.core.publisher.Flux} and fetched with at most <em>loadParallelism</em> calls in flight,
+     * without holding a thread per call. The first load blocks until the secrets are available, the refreshes do not.
+     * </p>
+     *
+     * @param secretClient      the Key Vault secret client.
+     * @param secretAsyncClient the Key Vault async secret client, null to load the secrets with the secret client.
+     * @param refreshInMillis   the refresh in milliseconds (0 or less disables refresh).
+     * @param secretKeys        the secret keys to look for.
+     * @param caseSensitive     the case sensitive flag.
+     * @param localCache        the last-known-good local copy of the secrets, may be null.
+     * @param loadParallelism   the maximum number of secrets fetched concurrently.
+     */
+    public KeyVaultOperation(
+        final SecretClient secretClient,
+        final SecretAsyncClient secretAsyncClient,
+        final long refreshInMillis,
+        List<String> secretKeys,
+        boolean caseSensitive,
+        LocalSnapshotFile localCache,
+        int loadParallelism
+    ) {
+        Validator.validateTrue(loadParallelism > 0, "The provided loadParallelism should be strictly positive");
 
         this.caseSensitive = caseSensitive;
         this.secretClient = secretClient;
+        this.secretAsyncClient = secretAsyncClient;
         this.secretKeys = secretKeys;
+        this.localCache = localCache;
+        this.loadParallelism = loadParallelism;
+        this.loaderExecutor = secretAsyncClient == null ? newLoaderExecutor(loadParallelism) : null;
 
-        refreshProperties();
+        final LocalSnapshotFile.Snapshot snapshot = localCache != null ? localCache.read() : null;
+        if (snapshot != null) {
+            LOG.info("Serving the key vault secrets from the local cache {}, saved at {}", localCache.getFile(), new Date(snapshot.getSavedAt()));
+            setLoadedSecrets(fromLocalCache(snapshot));
+        } else {
+            refreshProperties();
+        }
 
         if (refreshInMillis > 0) {
-            final Timer timer = new Timer();
-            final TimerTask task = new TimerTask() {
-                @Override
-                public void run() {
-                    refreshProperties();
+            scheduledRefresh = secretAsyncClient != null
+                ? RefreshScheduler.shared().scheduleAsync("azure-keyvault", refreshInMillis, this::refreshAsync)
+                : RefreshScheduler.shared().schedule("azure-keyvault", refreshInMillis, this::refreshProperties);
+        } else {
+            scheduledRefresh = null;
+        }
+
+        // Reconcile the local cache with the key vault last, once every field is set
+        if (snapshot == null) {
+            reconciliation = null;
+        } else if (secretAsyncClient != null) {
+            reconciliation = null;
+            refreshAsync().whenComplete((result, ex) -> {
+                if (ex != null) {
+                    LOG.error("Failed to reload the secrets from the key vault, serving the local cache until the next refresh", ex);
                 }
-            };
-            timer.scheduleAtFixedRate(task, refreshInMillis, refreshInMillis);
+            });
+        } else {
+            reconciliation = RefreshScheduler.shared().submit("azure-keyvault-reconcile", this::reconcileWithKeyVault);
         }
     }
 
@@ -99,60 +268,464 @@ public class KeyVaultOperation {
      * @return the property value.
      */
     public String getProperty(String property) {
-        return properties.get(toKeyVaultSecretName(property));
+        final Snapshot current = snapshot;
+        final String value = current.relaxedIndex.get(property);
+        if (value != null || caseSensitive) {
+            return value;
+        }
+        return current.properties.get(toKeyVaultSecretName(property));
     }
 
     /**
-     * Get the property names.
+     * Get the version of the secrets snapshot, incremented each time a refresh changes a secret.
+     *
+     * @return the snapshot version.
+     */
+    public long getSnapshotVersion() {
+        return snapshot.version;
+    }
+
+    /**
+     * Set the publisher of the {@link KeyVaultSecretsChangedEvent}, usually the application context.
+     *
+     * @param eventPublisher the event publisher, null to stop publishing.
+     */
+    public void setEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = closed ? null : eventPublisher;
+    }
+
+    /**
+     * Get the property names. The returned array instance stays the same as long as the secret names do not change.
      *
      * @return the property names.
      */
     public String[] getPropertyNames() {
+        return propertyNames.get();
+    }
+
+    /**
+     * Get the version of the property names, incremented each time the secret names change.
+     *
+     * @return the property names version.
+     */
+    public long getPropertyNamesVersion() {
+        return propertyNames.getVersion();
+    }
+
+    private List<String> computePropertyNames(Map<String, String> properties) {
         if (!caseSensitive) {
             return properties
                 .keySet()
                 .stream()
-                .flatMap(p -> Stream.of(p, p.replaceAll("-", ".")))
+                .flatMap(p -> Stream.of(p, p.replace('-', '.')))
                 .distinct()
-                .toArray(String[]::new);
+                .collect(Collectors.toList());
         } else {
-            return properties
-                .keySet()
-                .toArray(new String[0]);
+            return new ArrayList<>(properties.keySet());
         }
     }
 
     /**
      * Refresh the properties by accessing key vault.
+     * <p>
+     * Without secret keys, only the secret properties are listed. A secret value is downloaded again only when
+     * its version or its update date differ from the loaded one; the secrets deleted or disabled since the last
+     * refresh are dropped.
+     * </p>
+     * <p>
+     * With secret keys, each key is fetched with <em>getSecret</em>, so that the <strong>Get</strong> permission
+     * alone is enough, and an unchanged secret keeps its loaded value.
+     * </p>
      */
-    private void refreshProperties() {
-        if (secretKeys == null || secretKeys.isEmpty()) {
-            properties = Optional.of(secretClient)
-                .map(SecretClient::listPropertiesOfSecrets)
-                .map(ContinuablePagedIterable::iterableByPage)
-                .map(i -> StreamSupport.stream(i.spliterator(), false))
-                .orElseGet(Stream::empty)
-                .map(PagedResponse::getElements)
-                .flatMap(i -> StreamSupport.stream(i.spliterator(), false))
-                .filter(SecretProperties::isEnabled)
-                .map(p -> secretClient.getSecret(p.getName(), p.getVersion()))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(
-                    s -> toKeyVaultSecretName(s.getName()),
-                    KeyVaultSecret::getValue
-                ));
-        } else {
-            properties = secretKeys.stream()
-                .map(this::toKeyVaultSecretName)
-                .map(secretClient::getSecret)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(
-                    s -> toKeyVaultSecretName(s.getName()),
-                    KeyVaultSecret::getValue
-                ));
+    private synchronized void refreshProperties() {
+        if (secretAsyncClient != null) {
+            applySecrets(loadSecretsAsync().block());
+            return;
+        }
+        if (secretKeys != null && !secretKeys.isEmpty()) {
+            applySecrets(getSecrets(secretKeyNames().stream()
+                .map(name -> Pair.of(name, (String) null))
+                .collect(Collectors.toList())));
+            return;
+        }
+        final List<SecretProperties> secrets = timed(ConfigMetrics.KEY_VAULT_LIST_SECRETS, () -> Optional.of(secretClient)
+            .map(SecretClient::listPropertiesOfSecrets)
+            .map(ContinuablePagedIterable::iterableByPage)
+            .map(i -> StreamSupport.stream(i.spliterator(), false))
+            .orElseGet(Stream::empty)
+            .map(PagedResponse::getElements)
+            .flatMap(i -> StreamSupport.stream(i.spliterator(), false))
+            .collect(Collectors.toList()));
+
+        final Map<String, LoadedSecret> current = loadedSecrets;
+        final Map<String, LoadedSecret> secretsByName = new HashMap<>();
+        final List<Pair<String, String>> changed = new ArrayList<>();
+        for (SecretProperties secret : secrets) {
+            if (!Boolean.TRUE.equals(secret.isEnabled())) {
+                continue;
+            }
+            final LoadedSecret loaded = current.get(secret.getName());
+            if (loaded != null && loaded.isCurrent(secret)) {
+                secretsByName.put(secret.getName(), loaded);
+            } else {
+                changed.add(Pair.of(secret.getName(), secret.getVersion()));
+            }
+        }
+        secretsByName.putAll(getSecrets(changed));
+        applySecrets(secretsByName);
+    }
+
+    /**
+     * @return the key vault secret names of the secret keys, without duplicates.
+     */
+    private List<String> secretKeyNames() {
+        return secretKeys.stream()
+            .map(this::toKeyVaultSecretName)
+            .distinct()
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Keep the loaded secret when the fetched one has the same version and update date, so that a refresh
+     * fetching an unchanged secret does not replace it.
+     *
+     * @param name    the requested secret name, under which the secret is loaded.
+     * @param fetched the fetched secret.
+     * @return the secret to load.
+     */
+    private LoadedSecret toLoadedSecret(String name, KeyVaultSecret fetched) {
+        final LoadedSecret loaded = loadedSecrets.get(name);
+        if (loaded != null && loaded.isCurrent(fetched.getProperties()) && Objects.equals(loaded.value, fetched.getValue())) {
+            return loaded;
+        }
+        return LoadedSecret.of(fetched);
+    }
+
+    private void applySecrets(Map<String, LoadedSecret> secretsByName) {
+        final Map<String, LoadedSecret> current = loadedSecrets;
+        if (secretsByName.size() == current.size()
+            && secretsByName.entrySet().stream().allMatch(e -> current.get(e.getKey()) == e.getValue())) {
+            LOG.debug("No secret changed in the key vault since the last refresh");
+            return;
+        }
+        setLoadedSecrets(secretsByName);
+        if (localCache != null) {
+            localCache.write(toLocalCache(secretsByName));
+        }
+    }
+
+    private void setLoadedSecrets(Map<String, LoadedSecret> secretsByName) {
+        final Map<String, String> values = new HashMap<>();
+        secretsByName.forEach((name, secret) -> values.put(name, secret.value));
+        setSecrets(values);
+        loadedSecrets = Collections.unmodifiableMap(new HashMap<>(secretsByName));
+    }
+
+    /**
+     * Refresh the properties through the reactive path without blocking the caller.
+     * A refresh is skipped if the previous one is still in flight.
+     *
+     * @return the completion of the refresh.
+     */
+    private CompletableFuture<Void> refreshAsync() {
+        if (!asyncRefreshInProgress.compareAndSet(false, true)) {
+            LOG.warn("Skipping the key vault refresh, the previous one is still in progress");
+            return CompletableFuture.completedFuture(null);
+        }
+        return loadSecretsAsync()
+            .doOnNext(this::applySecrets)
+            .doFinally(signal -> asyncRefreshInProgress.set(false))
+            .then()
+            .toFuture();
+    }
+
+    /**
+     * Stop refreshing the properties and publishing their changes.
+     */
+    public void close() {
+        closed = true;
+        eventPublisher = null;
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel();
+        }
+        if (reconciliation != null) {
+            reconciliation.cancel(false);
+        }
+        if (loaderExecutor != null) {
+            loaderExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Load the secrets with the async client, at most <em>loadParallelism</em> calls in flight.
+     * Like {@link #refreshProperties()}, only the added or changed secrets are downloaded when listing,
+     * each secret key is fetched when provided, and failures are isolated per secret.
+     *
+     * @return the loaded secrets by secret name.
+     */
+    private Mono<Map<String, LoadedSecret>> loadSecretsAsync() {
+        return Mono.defer(() -> {
+            if (secretKeys != null && !secretKeys.isEmpty()) {
+                return Flux.fromIterable(secretKeyNames())
+                    .flatMap(name -> getSecretAsync(name, null), loadParallelism)
+                    .collectMap(Pair::getKey, Pair::getValue);
+            }
+            final Map<String, LoadedSecret> current = loadedSecrets;
+            return timedAsync(ConfigMetrics.KEY_VAULT_LIST_SECRETS, secretAsyncClient.listPropertiesOfSecrets().collectList())
+                .flatMapIterable(secrets -> secrets)
+                .filter(secret -> Boolean.TRUE.equals(secret.isEnabled()))
+                .flatMap(secret -> {
+                    final LoadedSecret loaded = current.get(secret.getName());
+                    if (loaded != null && loaded.isCurrent(secret)) {
+                        return Mono.just(Pair.of(secret.getName(), loaded));
+                    }
+                    return getSecretAsync(secret.getName(), secret.getVersion());
+                }, loadParallelism)
+                .collectMap(Pair::getKey, Pair::getValue);
+        });
+    }
+
+    private Mono<Pair<String, LoadedSecret>> getSecretAsync(String name, String version) {
+        return timedAsync(ConfigMetrics.KEY_VAULT_GET_SECRET,
+                version != null ? secretAsyncClient.getSecret(name, version) : secretAsyncClient.getSecret(name))
+            .map(fetched -> Pair.of(name, toLoadedSecret(name, fetched)))
+            .onErrorResume(ex -> Mono.justOrEmpty(onSecretFailure(name, ex)).map(kept -> Pair.of(name, kept)));
+    }
+
+    /**
+     * Fetch the given secrets concurrently, at most <em>loadParallelism</em> at a time.
+     * <p>
+     * A failure only impacts its own secret: a secret not found is skipped, any other failure keeps
+     * the secret currently loaded, if any.
+     * </p>
+     * <p>
+     * Whether fetched or kept, a secret is loaded under its requested name, not the case the key vault returns,
+     * so that the next refresh finds it under the same name.
+     * </p>
+     *
+     * @param namesAndVersions the secret names with their version, null for the latest one.
+     * @return the loaded secrets by requested secret name.
+     */
+    private Map<String, LoadedSecret> getSecrets(List<Pair<String, String>> namesAndVersions) {
+        final Map<String, CompletableFuture<KeyVaultSecret>> futures = new LinkedHashMap<>();
+        for (Pair<String, String> nameAndVersion : namesAndVersions) {
+            final String name = nameAndVersion.getKey();
+            final String version = nameAndVersion.getValue();
+            futures.put(name, CompletableFuture.supplyAsync(() -> timed(ConfigMetrics.KEY_VAULT_GET_SECRET,
+                () -> version != null ? secretClient.getSecret(name, version) : secretClient.getSecret(name)), loaderExecutor));
+        }
+
+        final Map<String, LoadedSecret> secretsByName = new HashMap<>();
+        futures.forEach((name, future) -> {
+            try {
+                final KeyVaultSecret secret = future.join();
+                if (secret != null) {
+                    secretsByName.put(name, toLoadedSecret(name, secret));
+                }
+            } catch (CompletionException ex) {
+                final LoadedSecret kept = onSecretFailure(name, ex.getCause());
+                if (kept != null) {
+                    secretsByName.put(name, kept);
+                }
+            }
+        });
+        return secretsByName;
+    }
+
+    /**
+     * Handle the failure to fetch a secret.
+     *
+     * @param name    the secret name.
+     * @param failure the failure.
+     * @return the secret to keep, null to skip it.
+     */
+    private LoadedSecret onSecretFailure(String name, Throwable failure) {
+        if (failure instanceof ResourceNotFoundException) {
+            LOG.warn("Secret '{}' not found in the key vault, skipping it", name);
+            return null;
+        }
+        final LoadedSecret current = loadedSecrets.get(name);
+        LOG.error("Failed to retrieve the secret '{}' from the key vault, {}", name,
+            current != null ? "keeping its current value" : "skipping it", failure);
+        return current;
+    }
+
+    private static ExecutorService newLoaderExecutor(int loadParallelism) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(loadParallelism, loadParallelism,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(runnable, "azure-keyvault-loader-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Replace the secrets snapshot and publish a {@link KeyVaultSecretsChangedEvent} listing the changed properties.
+     *
+     * @param secretsByName the secret values by secret name, as named in the key vault.
+     */
+    private synchronized void setSecrets(Map<String, String> secretsByName) {
+        final Map<String, String> canonicalProperties = new HashMap<>();
+        secretsByName.forEach((name, value) -> canonicalProperties.put(toKeyVaultSecretName(name), value));
+
+        final Snapshot previous = snapshot;
+        final Set<String> changedKeys = new TreeSet<>();
+        canonicalProperties.forEach((key, value) -> {
+            if (!Objects.equals(value, previous.properties.get(key))) {
+                changedKeys.add(key);
+            }
+        });
+        previous.properties.keySet().stream()
+            .filter(key -> !canonicalProperties.containsKey(key))
+            .forEach(changedKeys::add);
+        if (changedKeys.isEmpty()) {
+            return;
+        }
+
+        final Snapshot next = new Snapshot(previous.version + 1,
+            Collections.unmodifiableMap(canonicalProperties), buildRelaxedIndex(secretsByName));
+        snapshot = next;
+        propertyNames.update(computePropertyNames(canonicalProperties));
+        publishChanges(next.version, changedKeys);
+    }
+
+    private void publishChanges(long version, Set<String> changedKeys) {
+        final ApplicationEventPublisher publisher = eventPublisher;
+        if (publisher == null) {
+            return;
+        }
+        final Set<String> changedPropertyNames = changedKeys.stream()
+            .map(key -> caseSensitive ? key : key.replace('-', '.'))
+            .collect(Collectors.collectingAndThen(Collectors.toCollection(TreeSet::new), Collections::unmodifiableSet));
+        LOG.info("Key vault secrets snapshot {} changed the properties {}", version, changedPropertyNames);
+        try {
+            publisher.publishEvent(new KeyVaultSecretsChangedEvent(this, version, changedPropertyNames));
+        } catch (RuntimeException ex) {
+            LOG.error("Failed to publish the change of the properties {}", changedPropertyNames, ex);
         }
     }
 
+    /**
+     * Index the secret values by all the relaxed names Spring commonly asks for. For the secret <em>acme-myProject</em>:
+     * <ul>
+     * <li>kebab: acme-myproject</li>
+     * <li>dotted: acme.myproject</li>
+     * <li>upper snake: ACME_MYPROJECT</li>
+     * <li>camel: acme.myProject</li>
+     * </ul>
+     * Every indexed name translates to the same secret name, so the index only saves the translation.
+     *
+     * @param secretsByName the secret values by secret name.
+     * @return the immutable index.
+     */
+    private Map<String, String> buildRelaxedIndex(Map<String, String> secretsByName) {
+        if (caseSensitive) {
+            return Collections.unmodifiableMap(new HashMap<>(secretsByName));
+        }
+        final Map<String, String> index = new HashMap<>(secretsByName.size() * 7);
+        secretsByName.forEach((name, value) -> {
+            final String kebabName = name.toLowerCase(Locale.US);
+            index.put(name, value);
+            index.put(kebabName, value);
+            index.put(kebabName.replace('-', '.'), value);
+            index.put(kebabName.toUpperCase(Locale.US).replace('-', '_'), value);
+            index.put(name.replace('-', '.'), value);
+        });
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Reload the secrets served from the local cache, keeping them if the key vault is not reachable.
+     */
+    private void reconcileWithKeyVault() {
+        try {
+            refreshProperties();
+        } catch (RuntimeException ex) {
+            LOG.error("Failed to reload the secrets from the key vault, serving the local cache until the next refresh", ex);
+        }
+    }
+
+    private static Map<String, LoadedSecret> fromLocalCache(LocalSnapshotFile.Snapshot snapshot) {
+        final Map<String, LoadedSecret> cachedSecrets = new HashMap<>();
+        snapshot.getEntries().forEach((name, cells) -> {
+            final LocalSnapshotFile.Cell version = cells.get(LOCAL_CACHE_VERSION_COLUMN);
+            final LocalSnapshotFile.Cell updatedOn = cells.get(LOCAL_CACHE_UPDATED_ON_COLUMN);
+            cachedSecrets.put(name, new LoadedSecret(cells.get(LOCAL_CACHE_COLUMN).getValue(),
+                version != null ? version.getValue() : null,
+                updatedOn != null ? OffsetDateTime.parse(updatedOn.getValue()) : null));
+        });
+        return cachedSecrets;
+    }
+
+    private static Map<String, Map<String, LocalSnapshotFile.Cell>> toLocalCache(Map<String, LoadedSecret> secrets) {
+        final Map<String, Map<String, LocalSnapshotFile.Cell>> entries = new HashMap<>();
+        secrets.forEach((name, secret) -> {
+            final Map<String, LocalSnapshotFile.Cell> cells = new HashMap<>();
+            cells.put(LOCAL_CACHE_COLUMN, new LocalSnapshotFile.Cell((byte) 0, secret.value));
+            if (secret.version != null) {
+                cells.put(LOCAL_CACHE_VERSION_COLUMN, new LocalSnapshotFile.Cell((byte) 0, secret.version));
+            }
+            if (secret.updatedOn != null) {
+                cells.put(LOCAL_CACHE_UPDATED_ON_COLUMN, new LocalSnapshotFile.Cell((byte) 0, secret.updatedOn.toString()));
+            }
+            entries.put(name, cells);
+        });
+        return entries;
+    }
+
+    /**
+     * Run a Key Vault call and record its duration and outcome.
+     * The paged listing is lazy, so the supplier must consume all the pages for the timing to be meaningful.
+     *
+     * @param operation the operation name.
+     * @param call      the Key Vault call.
+     * @return the call result.
+     */
+    private <T> T timed(String operation, Supplier<T> call) {
+        if (!metrics.isEnabled()) {
+            return call.get();
+        }
+        final long start = System.nanoTime();
+        try {
+            final T result = call.get();
+            metrics.recordKeyVaultCall(secretClient.getVaultUrl(), operation, System.nanoTime() - start, 0, true);
+            return result;
+        } catch (HttpResponseException ex) {
+            final int statusCode = ex.getResponse() != null ? ex.getResponse().getStatusCode() : 0;
+            metrics.recordKeyVaultCall(secretClient.getVaultUrl(), operation, System.nanoTime() - start, statusCode, false);
+            throw ex;
+        } catch (RuntimeException ex) {
+            metrics.recordKeyVaultCall(secretClient.getVaultUrl(), operation, System.nanoTime() - start, 0, false);
+            throw ex;
+        }
+    }
+
+    /**
+     * Reactive version of {@link #timed(String, Supplier)}, timing the call from subscription to completion.
+     *
+     * @param operation the operation name.
+     * @param call      the Key Vault call.
+     * @return the timed call.
+     */
+    private <T> Mono<T> timedAsync(String operation, Mono<T> call) {
+        if (!metrics.isEnabled()) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return call
+                .doOnSuccess(result -> metrics.recordKeyVaultCall(secretClient.getVaultUrl(), operation, System.nanoTime() - start, 0, true))
+                .doOnError(ex -> metrics.recordKeyVaultCall(secretClient.getVaultUrl(), operation, System.nanoTime() - start,
+                    ex instanceof HttpResponseException && ((HttpResponseException) ex).getResponse() != null
+                        ? ((HttpResponseException) ex).getResponse().getStatusCode()
+                        : 0,
+                    false));
+        });
+    }
+
     /**
      * For convention we need to support all relaxed binding format from spring, these may include:
      * <table>
@@ -172,28 +745,85 @@ public class KeyVaultOperation {
      */
     private String toKeyVaultSecretName(@NonNull String property) {
         if (!caseSensitive) {
-            if (property.matches("[a-z0-9A-Z-]+")) {
-                return property.toLowerCase(Locale.US);
-            } else if (property.matches("[A-Z0-9_]+")) {
-                return property.toLowerCase(Locale.US).replaceAll("_", "-");
-            } else {
-                return property.toLowerCase(Locale.US)
-                    .replaceAll("-", "") // my-project -> myproject
-                    .replaceAll("_", "") // my_project -> myproject
-                    .replaceAll("\\.", "-"); // acme.myproject -> acme-myproject
-            }
+            return secretNames.get(property);
         } else {
             return property;
         }
     }
 
+    private static String translateToKeyVaultSecretName(String property) {
+        if (KEY_VAULT_SECRET_NAME.matcher(property).matches()) {
+            return property.toLowerCase(Locale.US);
+        } else if (UPPER_SNAKE_CASE_NAME.matcher(property).matches()) {
+            return property.toLowerCase(Locale.US).replace('_', '-');
+        } else {
+            // my-project -> myproject, my_project -> myproject, acme.myproject -> acme-myproject
+            return StringUtils.replaceChars(property.toLowerCase(Locale.US), ".-_", "-");
+        }
+    }
+
     /**
      * Set the properties.
      *
      * @param properties the properties.
      */
     void setProperties(HashMap<String, String> properties) {
-        this.properties = properties;
+        setSecrets(properties);
     }
 
+
+    /**
+     * An immutable version of the secrets.
+     */
+    private static final class Snapshot {
+        private final long version;
+
+        /**
+         * Stores the secret values by canonical secret name.
+         */
+        private final Map<String, String> properties;
+
+        /**
+         * Stores the secret values by relaxed name, see {@link #buildRelaxedIndex(Map)}.
+         */
+        private final Map<String, String> relaxedIndex;
+
+        private Snapshot(long version, Map<String, String> properties, Map<String, String> relaxedIndex) {
+            this.version = version;
+            this.properties = properties;
+            this.relaxedIndex = relaxedIndex;
+        }
+    }
+
+    /**
+     * A loaded secret value with the version and update date it was loaded at.
+     */
+    private static final class LoadedSecret {
+        private final String value;
+        private final String version;
+        private final OffsetDateTime updatedOn;
+
+        private LoadedSecret(String value, String version, OffsetDateTime updatedOn) {
+            this.value = value;
+            this.version = version;
+            this.updatedOn = updatedOn;
+        }
+
+        private static LoadedSecret of(KeyVaultSecret secret) {
+            return new LoadedSecret(secret.getValue(), secret.getProperties().getVersion(), secret.getProperties().getUpdatedOn());
+        }
+
+        /**
+         * Whether the listed secret properties still match this loaded value.
+         * The update date changes with each new version, enabling or disabling it and any attribute update.
+         *
+         * @param properties the listed secret properties.
+         * @return true if the secret has not changed since it was loaded.
+         */
+        private boolean isCurrent(SecretProperties properties) {
+            return updatedOn != null
+                && updatedOn.isEqual(properties.getUpdatedOn() != null ? properties.getUpdatedOn() : OffsetDateTime.MIN)
+                && (properties.getVersion() == null || Objects.equals(version, properties.getVersion()));
+        }
+    }
 }
@@ -60,6 +60,70 @@ public class KeyVaultProperties {
         this.secretKeys = secretKeys;
     }
 
+    public String getLocalCacheFile() {
+        return localCacheFile;
+    }
+
+    public void setLocalCacheFile(String localCacheFile) {
+        this.localCacheFile = localCacheFile;
+    }
+
+    public String getLocalCacheEncryptionKey() {
+        return localCacheEncryptionKey;
+    }
+
+    public void setLocalCacheEncryptionKey(String localCacheEncryptionKey) {
+        this.localCacheEncryptionKey = localCacheEncryptionKey;
+    }
+
+    public Boolean getLocalCachePlaintextAllowed() {
+        return localCachePlaintextAllowed;
+    }
+
+    public void setLocalCachePlaintextAllowed(Boolean localCachePlaintextAllowed) {
+        this.localCachePlaintextAllowed = localCachePlaintextAllowed;
+    }
+
+    public Long getLocalCacheMaxStaleness() {
+        return localCacheMaxStaleness;
+    }
+
+    public void setLocalCacheMaxStaleness(Long localCacheMaxStaleness) {
+        this.localCacheMaxStaleness = localCacheMaxStaleness;
+    }
+
+    public Integer getLoadParallelism() {
+        return loadParallelism;
+    }
+
+    public void setLoadParallelism(Integer loadParallelism) {
+        this.loadParallelism = loadParallelism;
+    }
+
+    public Boolean getReactiveEnabled() {
+        return reactiveEnabled;
+    }
+
+    public void setReactiveEnabled(Boolean reactiveEnabled) {
+        this.reactiveEnabled = reactiveEnabled;
+    }
+
+    public Boolean getBackgroundLoading() {
+        return backgroundLoading;
+    }
+
+    public void setBackgroundLoading(Boolean backgroundLoading) {
+        this.backgroundLoading = backgroundLoading;
+    }
+
+    public Long getBootstrapTimeout() {
+        return bootstrapTimeout;
+    }
+
+    public void setBootstrapTimeout(Long bootstrapTimeout) {
+        this.bootstrapTimeout = bootstrapTimeout;
+    }
+
     public String getOrder() {
         return order;
     }
@@ -73,6 +137,43 @@ public class KeyVaultProperties {
     private List<String> secretKeys;
     private Long refreshInterval = Constants.DEFAULT_REFRESH_INTERVAL_MS;
 
+    /**
+     * Local file keeping the last loaded secrets, to start without waiting for the key vault.
+     * Disabled when not set.
+     */
+    private String localCacheFile;
+
+    /**
+     * Base64 encoded AES key encrypting the local cache file.
+     */
+    private String localCacheEncryptionKey;
+
+    /**
+     * Allow the local cache file to store the secrets in clear when no encryption key is set.
+     */
+    private Boolean localCachePlaintextAllowed = false;
+    private Long localCacheMaxStaleness = Constants.DEFAULT_LOCAL_CACHE_MAX_STALENESS_MS;
+
+    /**
+     * Maximum number of secrets fetched concurrently.
+     */
+    private Integer loadParallelism = Constants.DEFAULT_KEYVAULT_LOAD_PARALLELISM;
+
+    /**
+     * Load the secrets with the async secret client instead of blocking a thread per call.
+     */
+    private Boolean reactiveEnabled = false;
+
+    /**
+     * Maximum time in milliseconds to load the key vault secrets and the Azure table at startup.
+     */
+    private Long bootstrapTimeout = Constants.DEFAULT_BOOTSTRAP_TIMEOUT_MS;
+
+    /**
+     * Register the key vault and Azure table property sources right away and load them in the background.
+     */
+    private Boolean backgroundLoading = false;
+
     /**
      * The constant used to define the order of the key vaults you are
      * delivering (comma delimited, e.g 'my-vault, my-vault-2').
@@ -82,8 +183,16 @@ public class KeyVaultProperties {
 
 
     public enum Property {
+        BACKGROUND_LOADING("background-loading"),
+        BOOTSTRAP_TIMEOUT("bootstrap-timeout"),
         CASE_SENSITIVE_KEYS("case-sensitive-keys"),
         ENABLED("enabled"),
+        LOCAL_CACHE_FILE("local-cache-file"),
+        LOCAL_CACHE_ENCRYPTION_KEY("local-cache-encryption-key"),
+        LOCAL_CACHE_MAX_STALENESS("local-cache-max-staleness"),
+        LOCAL_CACHE_PLAINTEXT_ALLOWED("local-cache-plaintext-allowed"),
+        LOAD_PARALLELISM("load-parallelism"),
+        REACTIVE_ENABLED("reactive-enabled"),
         ORDER("order"),
         REFRESH_INTERVAL("refresh-interval"),
         SECRET_KEYS("secret-keys"),
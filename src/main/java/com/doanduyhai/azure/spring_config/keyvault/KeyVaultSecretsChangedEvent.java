@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.keyvault;
+
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event published when a refresh of the key vault secrets added, updated or removed some of them.
+ * <p>
+ * It lists exactly the changed properties, so that listeners can rebind only the affected
+ * {@code @ConfigurationProperties} prefixes instead of refreshing the whole context:
+ * </p>
+ * <pre>
+ * &#64;EventListener
+ * public void onSecretsChanged(KeyVaultSecretsChangedEvent event) {
+ *     if (event.affects("app.datasource")) {
+ *         // rebind the datasource properties
+ *     }
+ * }
+ * </pre>
+ */
+public class KeyVaultSecretsChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+    private final Set<String> changedPropertyNames;
+
+    /**
+     * Constructor.
+     *
+     * @param source               the key vault operation that refreshed the secrets.
+     * @param version              the version of the secrets snapshot holding the changes.
+     * @param changedPropertyNames the dotted names of the changed properties.
+     */
+    public KeyVaultSecretsChangedEvent(KeyVaultOperation source, long version, Set<String> changedPropertyNames) {
+        super(source);
+        this.version = version;
+        this.changedPropertyNames = changedPropertyNames;
+    }
+
+    /**
+     * Get the version of the secrets snapshot holding the changes.
+     *
+     * @return the snapshot version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the dotted names of the added, updated or removed properties, e.g. <em>app.datasource.password</em>
+     * for the secret <em>app-datasource-password</em>.
+     *
+     * @return the immutable set of changed property names.
+     */
+    public Set<String> getChangedPropertyNames() {
+        return changedPropertyNames;
+    }
+
+    /**
+     * Whether a property under the given prefix has changed. Like the key vault secret names, the prefix is
+     * compared ignoring the case and the dashes and underscores, so <em>acme.my-project</em>,
+     * <em>acme.myProject</em> and <em>acme.my_project</em> all match the secret <em>acme-myproject-name</em>.
+     *
+     * @param prefix the {@code @ConfigurationProperties} prefix, e.g. <em>app.datasource</em>.
+     * @return true if a changed property is the prefix itself or starts with it.
+     */
+    public boolean affects(String prefix) {
+        final String relaxedPrefix = toRelaxedName(prefix);
+        return changedPropertyNames.stream()
+            .map(KeyVaultSecretsChangedEvent::toRelaxedName)
+            .anyMatch(name -> name.equals(relaxedPrefix) || name.startsWith(relaxedPrefix + "."));
+    }
+
+    private static String toRelaxedName(String name) {
+        // acme.my-project -> acme.myproject, acme.myProject -> acme.myproject
+        return StringUtils.replaceChars(name.toLowerCase(Locale.US), "-_", "");
+    }
+}
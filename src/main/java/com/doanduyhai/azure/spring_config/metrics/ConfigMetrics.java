@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.metrics;
+
+import org.springframework.util.ClassUtils;
+
+import com.doanduyhai.azure.spring_config.azure_table.OperationDiagnostics;
+
+/**
+ * Metrics of the calls made to Azure table and Azure Key Vault.
+ * <br/>
+ * When <strong>Micrometer</strong> is on the classpath, timers and counters are registered
+ * on its global registry, otherwise every call is a no-op
+ */
+public interface ConfigMetrics {
+
+    String KEY_VAULT_GET_SECRET = "getSecret";
+    String KEY_VAULT_LIST_SECRETS = "listPropertiesOfSecrets";
+
+    String AZURE_TABLE_SOURCE = "azure-table";
+
+    /**
+     * @return false for the no-op implementation, to avoid instrumenting needlessly
+     */
+    boolean isEnabled();
+
+    /**
+     * Record a completed Azure table operation, with its retries and throttled requests
+     * @param diagnostics the operation diagnostics
+     */
+    void recordTableOperation(OperationDiagnostics diagnostics);
+
+    /**
+     * Record a completed Key Vault call
+     * @param vault the vault url
+     * @param operation the operation, <em>getSecret</em> or <em>listPropertiesOfSecrets</em>
+     * @param durationNanos the duration of the call
+     * @param statusCode the HTTP status of the failure, 0 on success or when unknown
+     * @param success whether the call succeeded
+     */
+    void recordKeyVaultCall(String vault, String operation, long durationNanos, int statusCode, boolean success);
+
+    /**
+     * Record a lookup in an in-memory cache of properties
+     * @param source the property source, <em>azure-table</em>
+     * @param hit whether the property was found in memory
+     */
+    void recordCacheLookup(String source, boolean hit);
+
+    /**
+     * Get the metrics implementation matching the classpath
+     * @return the Micrometer implementation if available, the no-op one otherwise
+     */
+    static ConfigMetrics get() {
+        return Holder.INSTANCE;
+    }
+
+    final class Holder {
+        private static final ConfigMetrics INSTANCE = ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry",
+                ConfigMetrics.class.getClassLoader())
+                ? new MicrometerConfigMetrics()
+                : new NoOpConfigMetrics();
+
+        private Holder() {
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.doanduyhai.azure.spring_config.azure_table.OperationDiagnostics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link ConfigMetrics} registering its meters on the Micrometer global registry.
+ * <br/>
+ * The properties are loaded before the application context exists, so the meters cannot be bound to the
+ * application registry. Spring Boot adds its registry to the global composite when
+ * <em>management.metrics.use-global-registry</em> is true, which is the default
+ * <br/>
+ * <br/>
+ * Meters:
+ * <ul>
+ *     <li><strong>azure.config.table.operations</strong>: timer tagged by table, operation and outcome</li>
+ *     <li><strong>azure.config.keyvault.operations</strong>: timer tagged by vault, operation and outcome</li>
+ *     <li><strong>azure.config.retries</strong>: counter tagged by service and operation</li>
+ *     <li><strong>azure.config.throttled</strong>: counter of the throttled requests, tagged by service and operation</li>
+ *     <li><strong>azure.config.cache</strong>: counter tagged by source and result (hit or miss)</li>
+ * </ul>
+ */
+class MicrometerConfigMetrics implements ConfigMetrics {
+
+    private static final String TABLE_SERVICE = "azure-table";
+    private static final String KEY_VAULT_SERVICE = "keyvault";
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+
+    private final MeterRegistry registry = Metrics.globalRegistry;
+
+    /**
+     * Cache lookups happen for every property resolution, their counters are kept to avoid a registry lookup each time
+     */
+    private final Map<String, Counter> cacheCounters = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordTableOperation(OperationDiagnostics diagnostics) {
+        Timer.builder("azure.config.table.operations")
+                .description("Duration of the Azure table operations, retries included")
+                .tag("table", diagnostics.getTableName())
+                .tag("operation", diagnostics.getOperation())
+                .tag("outcome", outcome(diagnostics.isSuccess()))
+                .register(registry)
+                .record(diagnostics.getDurationNanos(), TimeUnit.NANOSECONDS);
+        if (diagnostics.getRetryCount() > 0) {
+            retries(TABLE_SERVICE, diagnostics.getOperation()).increment(diagnostics.getRetryCount());
+        }
+        if (diagnostics.getThrottledCount() > 0) {
+            throttled(TABLE_SERVICE, diagnostics.getOperation()).increment(diagnostics.getThrottledCount());
+        }
+    }
+
+    @Override
+    public void recordKeyVaultCall(String vault, String operation, long durationNanos, int statusCode, boolean success) {
+        Timer.builder("azure.config.keyvault.operations")
+                .description("Duration of the Key Vault calls")
+                .tag("vault", vault)
+                .tag("operation", operation)
+                .tag("outcome", outcome(success))
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        if (isThrottled(statusCode)) {
+            throttled(KEY_VAULT_SERVICE, operation).increment();
+        }
+    }
+
+    @Override
+    public void recordCacheLookup(String source, boolean hit) {
+        String result = hit ? "hit" : "miss";
+        cacheCounters.computeIfAbsent(source + ":" + result, key -> Counter.builder("azure.config.cache")
+                .description("Property lookups answered from memory (hit) or requiring a remote call (miss)")
+                .tag("source", source)
+                .tag("result", result)
+                .register(registry))
+                .increment();
+    }
+
+    private Counter retries(String service, String operation) {
+        return Counter.builder("azure.config.retries")
+                .description("Requests retried after a transient failure")
+                .tag("service", service)
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    private Counter throttled(String service, String operation) {
+        return Counter.builder("azure.config.throttled")
+                .description("Requests rejected by the service because of throttling")
+                .tag("service", service)
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    private static boolean isThrottled(int statusCode) {
+        return statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HTTP_SERVICE_UNAVAILABLE;
+    }
+
+    private static String outcome(boolean success) {
+        return success ? "success" : "failure";
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.metrics;
+
+import com.doanduyhai.azure.spring_config.azure_table.OperationDiagnostics;
+
+/**
+ * {@link ConfigMetrics} used when Micrometer is not on the classpath
+ */
+class NoOpConfigMetrics implements ConfigMetrics {
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void recordTableOperation(OperationDiagnostics diagnostics) {
+    }
+
+    @Override
+    public void recordKeyVaultCall(String vault, String operation, long durationNanos, int statusCode, boolean success) {
+    }
+
+    @Override
+    public void recordCacheLookup(String source, boolean hit) {
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.utils;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Last-known-good copy of the properties loaded from Azure, kept in a local file so that the next start
+ * can serve them immediately, even when Azure is unreachable, then reconcile in the background.
+ * <br/>
+ * <br/>
+ * The file is a compact binary format, read in a single pass. Each entry is a key holding
+ * named cells, each cell being a type tag chosen by the caller and a string value.
+ * When an encryption key is provided, the content is encrypted with <strong>AES/GCM</strong>, the header
+ * being authenticated too. The file is written to a temporary file first then moved over the previous one
+ * <br/>
+ * <br/>
+ * A file older than the staleness limit, unreadable or encrypted with another key is ignored
+ */
+public class LocalSnapshotFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalSnapshotFile.class);
+    private static final int MAGIC = 0x415A5343;
+    // 2: the Azure table cells carry stable type codes instead of EdmType ordinals
+    private static final byte FORMAT_VERSION = 2;
+    private static final byte FLAG_ENCRYPTED = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 8;
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Path file;
+    private final SecretKeySpec encryptionKey;
+    private final long maxStalenessMillis;
+
+    /**
+     * Constructor
+     * @param file the snapshot file
+     * @param base64EncryptionKey base64 encoded AES key of 16, 24 or 32 bytes, null to store the snapshot in clear
+     * @param maxStalenessMillis age beyond which the snapshot is ignored, 0 or less for no limit
+     */
+    public LocalSnapshotFile(Path file, String base64EncryptionKey, long maxStalenessMillis) {
+        Validator.validateNotNull(file, "file");
+        this.file = file;
+        this.maxStalenessMillis = maxStalenessMillis;
+        if (base64EncryptionKey != null) {
+            byte[] key = Base64.getDecoder().decode(base64EncryptionKey);
+            Validator.validateTrue(key.length == 16 || key.length == 24 || key.length == 32,
+                    "The snapshot encryption key should be a base64 encoded AES key of 16, 24 or 32 bytes");
+            this.encryptionKey = new SecretKeySpec(key, "AES");
+        } else {
+            this.encryptionKey = null;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public boolean isEncrypted() {
+        return encryptionKey != null;
+    }
+
+    /**
+     * Read the snapshot
+     * @return the snapshot, null if the file does not exist, is too old or cannot be read
+     */
+    public Snapshot read() {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            // Not memory-mapped: every byte is copied out anyway, and a live mapping would prevent
+            // the next write from replacing the file on Windows
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            ByteBuffer header = buffer.duplicate();
+            header.limit(HEADER_SIZE);
+            if (buffer.getInt() != MAGIC || buffer.get() != FORMAT_VERSION) {
+                LOG.warn("Ignoring the local snapshot {}, unknown format", file);
+                return null;
+            }
+            boolean encrypted = (buffer.get() & FLAG_ENCRYPTED) != 0;
+            long savedAt = buffer.getLong();
+            if (maxStalenessMillis > 0 && System.currentTimeMillis() - savedAt > maxStalenessMillis) {
+                LOG.info("Ignoring the local snapshot {}, saved more than {} ms ago", file, maxStalenessMillis);
+                return null;
+            }
+            if (encrypted != isEncrypted()) {
+                LOG.warn("Ignoring the local snapshot {}, its encryption does not match the configuration", file);
+                return null;
+            }
+
+            ByteBuffer payload = buffer;
+            if (encrypted) {
+                byte[] iv = new byte[IV_LENGTH];
+                buffer.get(iv);
+                Cipher cipher = Cipher.getInstance(CIPHER);
+                cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+                cipher.updateAAD(header);
+                payload = ByteBuffer.allocate(cipher.getOutputSize(buffer.remaining()));
+                cipher.doFinal(buffer, payload);
+                payload.flip();
+            }
+            return new Snapshot(savedAt, readEntries(payload));
+        } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+            LOG.warn("Ignoring the local snapshot {}, it cannot be read", file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Replace the snapshot. Errors are logged and do not propagate, the snapshot being only a fallback
+     * @param entries the cells of each key
+     */
+    public void write(Map<String, Map<String, Cell>> entries) {
+        try {
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(HEADER_SIZE);
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            header.writeInt(MAGIC);
+            header.writeByte(FORMAT_VERSION);
+            header.writeByte(isEncrypted() ? FLAG_ENCRYPTED : 0);
+            header.writeLong(System.currentTimeMillis());
+
+            byte[] payload = writeEntries(entries);
+            ByteArrayOutputStream content = new ByteArrayOutputStream(HEADER_SIZE + IV_LENGTH + payload.length + 16);
+            content.write(headerBytes.toByteArray());
+            if (isEncrypted()) {
+                byte[] iv = new byte[IV_LENGTH];
+                RANDOM.nextBytes(iv);
+                Cipher cipher = Cipher.getInstance(CIPHER);
+                cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+                cipher.updateAAD(headerBytes.toByteArray());
+                content.write(iv);
+                content.write(cipher.doFinal(payload));
+            } else {
+                content.write(payload);
+            }
+
+            Path absoluteFile = file.toAbsolutePath();
+            Files.createDirectories(absoluteFile.getParent());
+            Path tempFile = Files.createTempFile(absoluteFile.getParent(), absoluteFile.getFileName().toString(), ".tmp");
+            try {
+                try {
+                    Files.setPosixFilePermissions(tempFile, PosixFilePermissions.fromString("rw-------"));
+                } catch (UnsupportedOperationException ex) {
+                    // Not a POSIX file system, keep the default permissions
+                }
+                Files.write(tempFile, content.toByteArray());
+                try {
+                    Files.move(tempFile, absoluteFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(tempFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                // No-op once moved, otherwise do not leave a partial snapshot behind
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException | GeneralSecurityException ex) {
+            LOG.warn("Failed to write the local snapshot {}", file, ex);
+        }
+    }
+
+    private static byte[] writeEntries(Map<String, Map<String, Cell>> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(entries.size());
+        for (Map.Entry<String, Map<String, Cell>> entry : entries.entrySet()) {
+            writeString(output, entry.getKey());
+            output.writeInt(entry.getValue().size());
+            for (Map.Entry<String, Cell> cell : entry.getValue().entrySet()) {
+                writeString(output, cell.getKey());
+                output.writeByte(cell.getValue().getType());
+                writeString(output, cell.getValue().getValue());
+            }
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, Map<String, Cell>> readEntries(ByteBuffer payload) {
+        int entryCount = payload.getInt();
+        Map<String, Map<String, Cell>> entries = new HashMap<>(entryCount * 4 / 3 + 1);
+        for (int i = 0; i < entryCount; i++) {
+            String key = readString(payload);
+            int cellCount = payload.getInt();
+            Map<String, Cell> cells = new HashMap<>(cellCount * 4 / 3 + 1);
+            for (int j = 0; j < cellCount; j++) {
+                String column = readString(payload);
+                byte type = payload.get();
+                cells.put(column, new Cell(type, readString(payload)));
+            }
+            entries.put(key, Collections.unmodifiableMap(cells));
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        Validator.validateTrue(length <= payload.remaining(), format("Corrupted snapshot, string of %d bytes", length));
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Content of the snapshot file
+     */
+    public static class Snapshot {
+        private final long savedAt;
+        private final Map<String, Map<String, Cell>> entries;
+
+        public Snapshot(long savedAt, Map<String, Map<String, Cell>> entries) {
+            this.savedAt = savedAt;
+            this.entries = entries;
+        }
+
+        /**
+         * @return the time the snapshot was written, in epoch milliseconds
+         */
+        public long getSavedAt() {
+            return savedAt;
+        }
+
+        /**
+         * @return the cells of each key
+         */
+        public Map<String, Map<String, Cell>> getEntries() {
+            return entries;
+        }
+    }
+
+    /**
+     * Typed value of the snapshot. The type tag is only meaningful to the writer of the snapshot, which must keep it stable across releases
+     */
+    public static class Cell {
+        private final byte type;
+        private final String value;
+
+        public Cell(byte type, String value) {
+            this.type = type;
+            this.value = value;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+}
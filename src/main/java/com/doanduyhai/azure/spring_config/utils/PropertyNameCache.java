@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded concurrent cache of property name translations, e.g. from a Spring relaxed property name
+ * to the canonical key of a property source.
+ * <br/>
+ * Spring probes the same names over and over while binding, so once warm a lookup is a single hash probe
+ * returning the already translated instance. When the cache is full, new names are translated without being cached
+ */
+public class PropertyNameCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final Map<String, String> translations = new ConcurrentHashMap<>();
+    private final UnaryOperator<String> translation;
+    private final int maxSize;
+
+    public PropertyNameCache(UnaryOperator<String> translation) {
+        this(translation, DEFAULT_MAX_SIZE);
+    }
+
+    public PropertyNameCache(UnaryOperator<String> translation, int maxSize) {
+        Validator.validateNotNull(translation, "translation");
+        Validator.validateTrue(maxSize > 0, "The provided maxSize should be strictly positive");
+        this.translation = translation;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Translate the given property name
+     * @param name the property name
+     * @return the translated name
+     */
+    public String get(String name) {
+        String translated = translations.get(name);
+        if (translated == null) {
+            translated = translation.apply(name);
+            if (translations.size() < maxSize) {
+                translations.putIfAbsent(name, translated);
+            }
+        }
+        return translated;
+    }
+}
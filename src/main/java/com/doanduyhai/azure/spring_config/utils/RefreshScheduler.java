@@ -0,0 +1,202 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler of the periodic refreshes of the Azure-backed property sources, shared by all of them.
+ * <br/>
+ * Its threads are daemon threads so they never keep the JVM alive. Each refresh is rescheduled only once
+ * the previous run is over, so a slow refresh never overlaps with the next one. Every delay gets a random
+ * <em>jitter</em> so that many instances started together do not hit Azure at the same time, and after
+ * consecutive failures the delay grows exponentially, up to <strong>MAX_BACKOFF_MULTIPLIER</strong> times the interval
+ * <br/>
+ * <br/>
+ * The shared scheduler lives as long as the JVM. The refreshes of a Spring context are cancelled when it closes,
+ * and the idle threads of the scheduler stop after <strong>IDLE_THREAD_KEEP_ALIVE_MS</strong>, so that no thread
+ * is left once no refresh is scheduled anymore
+ */
+public class RefreshScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RefreshScheduler.class);
+
+    public static final int DEFAULT_POOL_SIZE = 2;
+    public static final double JITTER_RATIO = 0.1;
+    public static final int MAX_BACKOFF_MULTIPLIER = 8;
+    public static final long IDLE_THREAD_KEEP_ALIVE_MS = 60_000L;
+
+    private static RefreshScheduler shared;
+
+    private final ScheduledExecutorService executor;
+
+    public RefreshScheduler(int poolSize) {
+        Validator.validateTrue(poolSize > 0, "The provided poolSize should be strictly positive");
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(poolSize, runnable -> {
+            final Thread thread = new Thread(runnable, "azure-config-refresh-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduledExecutor.setRemoveOnCancelPolicy(true);
+        scheduledExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        scheduledExecutor.setKeepAliveTime(IDLE_THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+        scheduledExecutor.allowCoreThreadTimeOut(true);
+        this.executor = scheduledExecutor;
+    }
+
+    /**
+     * Get the scheduler shared by the property sources, creating it if needed
+     * @return the shared scheduler
+     */
+    public static synchronized RefreshScheduler shared() {
+        if (shared == null) {
+            shared = new RefreshScheduler(DEFAULT_POOL_SIZE);
+        }
+        return shared;
+    }
+
+    /**
+     * Schedule a blocking refresh, run on the scheduler threads. A refresh fails by throwing an exception
+     * @param name the refresh name, used in the logs
+     * @param intervalMillis the interval between the end of a run and the start of the next one
+     * @param refresh the refresh
+     * @return the scheduled refresh
+     */
+    public ScheduledRefresh schedule(String name, long intervalMillis, Runnable refresh) {
+        return scheduleAsync(name, intervalMillis, () -> {
+            refresh.run();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Schedule a non-blocking refresh. The next run is only scheduled when the returned stage completes,
+     * a refresh fails by completing it exceptionally
+     * @param name the refresh name, used in the logs
+     * @param intervalMillis the interval between the end of a run and the start of the next one
+     * @param refresh the refresh
+     * @return the scheduled refresh
+     */
+    public ScheduledRefresh scheduleAsync(String name, long intervalMillis, Supplier<? extends CompletionStage<?>> refresh) {
+        Validator.validateTrue(intervalMillis > 0, "The provided intervalMillis should be strictly positive");
+        final ScheduledRefresh scheduledRefresh = new ScheduledRefresh(name, intervalMillis, refresh);
+        scheduledRefresh.scheduleNext();
+        return scheduledRefresh;
+    }
+
+    /**
+     * Run a blocking task once on the scheduler threads, e.g. the reconciliation of a property source served
+     * from its local cache. A failure is logged, the task is not retried
+     * @param name the task name, used in the logs
+     * @param task the task
+     * @return the pending task, to cancel it
+     */
+    public Future<?> submit(String name, Runnable task) {
+        return executor.submit(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                LOG.error("Failed to run the task '{}'", name, ex);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A refresh scheduled periodically, until cancelled
+     */
+    public class ScheduledRefresh {
+        private final String name;
+        private final long intervalMillis;
+        private final Supplier<? extends CompletionStage<?>> refresh;
+        private volatile int consecutiveFailures;
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> next;
+
+        private ScheduledRefresh(String name, long intervalMillis, Supplier<? extends CompletionStage<?>> refresh) {
+            this.name = name;
+            this.intervalMillis = intervalMillis;
+            this.refresh = refresh;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            final ScheduledFuture<?> scheduled = next;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+
+        private void scheduleNext() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                next = executor.schedule(this::run, nextDelay(), TimeUnit.MILLISECONDS);
+                if (cancelled) {
+                    // Cancelled meanwhile, the scheduled run may have been missed by cancel()
+                    next.cancel(false);
+                }
+            } catch (RejectedExecutionException ex) {
+                LOG.warn("The refresh '{}' is stopped, its scheduler is shut down", name);
+            }
+        }
+
+        private long nextDelay() {
+            final long backoff = intervalMillis * Math.min(1L << Math.min(consecutiveFailures, 30), MAX_BACKOFF_MULTIPLIER);
+            final double jitter = ThreadLocalRandom.current().nextDouble(-JITTER_RATIO, JITTER_RATIO);
+            return Math.max(1L, (long) (backoff * (1 + jitter)));
+        }
+
+        private void run() {
+            if (cancelled) {
+                return;
+            }
+            CompletionStage<?> stage;
+            try {
+                stage = refresh.get();
+            } catch (RuntimeException ex) {
+                final CompletableFuture<Object> failed = new CompletableFuture<>();
+                failed.completeExceptionally(ex);
+                stage = failed;
+            }
+            stage.whenComplete((result, failure) -> {
+                if (failure == null) {
+                    consecutiveFailures = 0;
+                } else {
+                    consecutiveFailures++;
+                    LOG.error("Failed to run the refresh '{}' ({} consecutive failures), backing off", name, consecutiveFailures, failure);
+                }
+                scheduleNext();
+            });
+        }
+    }
+}
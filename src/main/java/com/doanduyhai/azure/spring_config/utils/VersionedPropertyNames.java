@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Holder of the property names exposed by a property source.
+ * <br/>
+ * The names array is only replaced (and the version incremented) when an update brings a different
+ * key set, so that callers like Spring's <em>SpringIterableConfigurationPropertySource</em> keep
+ * receiving the very same array instance and can reuse their mapping cache
+ */
+public class VersionedPropertyNames {
+
+    private volatile Names current = new Names(Collections.emptySet(), 0L);
+
+    /**
+     * Get the property names. The returned array is shared and must not be modified
+     * @return the property names
+     */
+    public String[] get() {
+        return current.array;
+    }
+
+    /**
+     * Get the version of the property names, incremented each time the key set changes
+     * @return the version
+     */
+    public long getVersion() {
+        return current.version;
+    }
+
+    /**
+     * Whether the given name belongs to the current key set
+     * @param name property name
+     * @return true if the name is known
+     */
+    public boolean contains(String name) {
+        return current.set.contains(name);
+    }
+
+    /**
+     * Replace the property names if the given key set differs from the current one
+     * @param names the new property names, duplicates are ignored
+     * @return true if the key set has changed
+     */
+    public synchronized boolean update(Collection<String> names) {
+        Set<String> newSet = new LinkedHashSet<>(names);
+        Names previous = current;
+        if (previous.set.equals(newSet)) {
+            return false;
+        }
+        current = new Names(Collections.unmodifiableSet(newSet), previous.version + 1);
+        return true;
+    }
+
+    private static class Names {
+        private final Set<String> set;
+        private final String[] array;
+        private final long version;
+
+        private Names(Set<String> set, long version) {
+            this.set = set;
+            this.array = set.toArray(new String[0]);
+            this.version = version;
+        }
+    }
+}
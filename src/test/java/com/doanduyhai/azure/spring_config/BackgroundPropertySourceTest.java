@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.MapPropertySource;
+
+class BackgroundPropertySourceTest {
+
+    private final CompletableFuture<MapPropertySource> loading = new CompletableFuture<>();
+    private final BackgroundPropertySource propertySource = new BackgroundPropertySource("azure", loading, 200);
+
+    @Test
+    void should_block_first_access_until_loaded() throws Exception {
+        final CompletableFuture<Object> read = CompletableFuture.supplyAsync(() -> propertySource.getProperty("app.name"));
+        Thread.sleep(50);
+        assertFalse(read.isDone());
+
+        loading.complete(new MapPropertySource("azure", Collections.singletonMap("app.name", "demo")));
+
+        assertEquals("demo", read.get(1, TimeUnit.SECONDS));
+        assertTrue(propertySource.containsProperty("app.name"));
+        assertArrayEquals(new String[]{"app.name"}, propertySource.getPropertyNames());
+    }
+
+    @Test
+    void should_throw_loading_failure() {
+        loading.completeExceptionally(new IllegalStateException("Azure unreachable"));
+
+        final IllegalStateException ex = assertThrows(IllegalStateException.class, () -> propertySource.getProperty("app.name"));
+        assertEquals("Azure unreachable", ex.getMessage());
+    }
+
+    @Test
+    void should_throw_when_not_loaded_within_timeout() {
+        final IllegalStateException ex = assertThrows(IllegalStateException.class, () -> propertySource.containsProperty("app.name"));
+        assertTrue(ex.getMessage().contains("was not loaded within 200 ms"));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.azure_table;
+
+import static com.doanduyhai.azure.spring_config.azure_table.PropertyValueDao.PROPERTY_VALUE_ROW_KEY;
+import static com.doanduyhai.azure.spring_config.azure_table.PropertyValueDao.VALUE_COLUMN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.doanduyhai.azure.spring_config.utils.LocalSnapshotFile;
+import com.microsoft.azure.storage.table.DynamicTableEntity;
+import com.microsoft.azure.storage.table.EntityProperty;
+
+class AzureTableOperationTest {
+
+    private final InMemoryPropertyValueDao dao = new InMemoryPropertyValueDao();
+    private AzureTableOperation operation;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void closeOperation() {
+        if (operation != null) {
+            operation.close();
+        }
+    }
+
+    @Test
+    void should_find_property_added_after_first_key_scan() {
+        dao.put("app.val1", "value1");
+        operation = new AzureTableOperation(dao, keyFilterProperties(60_000L));
+        assertEquals("value1", operation.getProperty("app.val1"));
+
+        dao.put("app.val2", "value2");
+        assertNull(operation.getProperty("app.val2"));
+
+        operation.refreshPropertyNames();
+        assertEquals("value2", operation.getProperty("app.val2"));
+    }
+
+    @Test
+    void should_refuse_key_filter_without_refresh_interval() {
+        assertThrows(IllegalArgumentException.class, () -> new AzureTableOperation(dao, keyFilterProperties(0L)));
+    }
+
+    @Test
+    void should_serve_properties_from_local_cache_when_table_unreachable() {
+        Path cacheFile = tempDir.resolve("table.cache");
+        dao.put("app.val1", "value1");
+        new AzureTableOperation(dao, localCacheProperties(cacheFile)).close();
+
+        dao.unreachable = true;
+        operation = new AzureTableOperation(dao, localCacheProperties(cacheFile));
+
+        assertEquals("value1", operation.getProperty("app.val1"));
+    }
+
+    @Test
+    void should_ignore_local_cache_with_unknown_type_code() {
+        Path cacheFile = tempDir.resolve("table.cache");
+        new LocalSnapshotFile(cacheFile, null, 0L).write(Collections.singletonMap("app.val1",
+                Collections.singletonMap(VALUE_COLUMN, new LocalSnapshotFile.Cell((byte) 99, "cached"))));
+        dao.put("app.val1", "value1");
+
+        operation = new AzureTableOperation(dao, localCacheProperties(cacheFile));
+
+        assertEquals("value1", operation.getProperty("app.val1"));
+    }
+
+    private static AzureTableProperties localCacheProperties(Path cacheFile) {
+        AzureTableProperties tableProperties = new AzureTableProperties();
+        tableProperties.setSnapshotEnabled(true);
+        tableProperties.setRefreshInterval(0L);
+        tableProperties.setLocalCacheFile(cacheFile.toString());
+        return tableProperties;
+    }
+
+    private static AzureTableProperties keyFilterProperties(long refreshInterval) {
+        AzureTableProperties tableProperties = new AzureTableProperties();
+        tableProperties.setKeyFilterEnabled(true);
+        tableProperties.setRefreshInterval(refreshInterval);
+        return tableProperties;
+    }
+
+    /**
+     * Serves the key scans and the lookups from memory
+     */
+    private static class InMemoryPropertyValueDao extends PropertyValueDao {
+        private final Map<String, DynamicTableEntity> entities = new ConcurrentSkipListMap<>();
+        private volatile boolean unreachable = false;
+
+        private InMemoryPropertyValueDao() {
+            super("UseDevelopmentStorage=true", "BackendConfig");
+        }
+
+        private void put(String propertyName, String value) {
+            DynamicTableEntity entity = new DynamicTableEntity(propertyName, PROPERTY_VALUE_ROW_KEY);
+            entity.getProperties().put(VALUE_COLUMN, new EntityProperty(value));
+            entities.put(propertyName, entity);
+        }
+
+        @Override
+        public KeysQuery keysQuery() {
+            return new KeysQuery() {
+                @Override
+                public void forEachKey(BiConsumer<String, String> keyConsumer) {
+                    entities.values().forEach(entity -> keyConsumer.accept(entity.getPartitionKey(), entity.getRowKey()));
+                }
+            };
+        }
+
+        @Override
+        public FullScanQuery fullScanQuery() {
+            return new FullScanQuery() {
+                @Override
+                public List<DynamicTableEntity> listAll() {
+                    if (unreachable) {
+                        throw new IllegalStateException("Azure table unreachable");
+                    }
+                    return new ArrayList<>(entities.values());
+                }
+            };
+        }
+
+        @Override
+        public CRUD crud() {
+            return new CRUD() {
+                @Override
+                public DynamicTableEntity findById(String partitionKey, String rowKey) {
+                    DynamicTableEntity entity = entities.get(partitionKey);
+                    return entity != null && entity.getRowKey().equals(rowKey) ? entity : null;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.azure_table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+import com.microsoft.azure.storage.table.DynamicTableEntity;
+import com.microsoft.azure.storage.table.EdmType;
+import com.microsoft.azure.storage.table.EntityProperty;
+
+class EdmTypeResolverTest {
+
+    private final EdmTypeResolver resolver = new EdmTypeResolver();
+
+    @Test
+    void should_resolve_learnt_column() {
+        resolver.learn(entity("p1", "count", new EntityProperty(42)));
+        EdmTypeResolver.Session session = resolver.newSession();
+
+        assertEquals(EdmType.INT32, session.propertyResolver("p1", "r1", "count", "43"));
+        assertFalse(session.hasMismatches());
+    }
+
+    @Test
+    void should_flag_unknown_column_instead_of_defaulting_to_string() {
+        resolver.learn(entity("p1", "count", new EntityProperty(42)));
+        EdmTypeResolver.Session session = resolver.newSession();
+
+        session.propertyResolver("p1", "r1", "enabled", "true");
+
+        assertEquals(Collections.singleton("p1"), session.getMismatchedPartitions());
+    }
+
+    @Test
+    void should_flag_partition_never_learnt_in_a_scan() {
+        resolver.learn(entity("p1", "count", new EntityProperty(42)));
+        EdmTypeResolver.Session session = resolver.newSession();
+
+        assertEquals(EdmType.INT32, session.propertyResolver("p1", "r1", "count", "43"));
+        session.propertyResolver("p2", "r1", "count", "43");
+
+        assertEquals(Collections.singleton("p2"), session.getMismatchedPartitions());
+    }
+
+    @Test
+    void should_flag_value_not_matching_learnt_type() {
+        resolver.learn(entity("p1", "count", new EntityProperty(42)));
+        EdmTypeResolver.Session session = resolver.newSession();
+
+        session.propertyResolver("p1", "r1", "count", "forty-two");
+
+        assertTrue(session.hasMismatches());
+    }
+
+    @Test
+    void should_flag_date_time_column_holding_arbitrary_string() {
+        resolver.learn(entity("p1", "since", new EntityProperty(new Date(0L))));
+        EdmTypeResolver.Session session = resolver.newSession();
+
+        assertEquals(EdmType.DATE_TIME, session.propertyResolver("p1", "r1", "since", "2020-10-16T21:06:20.1234567Z"));
+        assertFalse(session.hasMismatches());
+
+        session.propertyResolver("p1", "r1", "since", "last tuesday");
+        assertTrue(session.hasMismatches());
+    }
+
+    @Test
+    void should_flag_binary_column_holding_non_base64_value() {
+        resolver.learn(entity("p1", "payload", new EntityProperty(new byte[]{1, 2, 3})));
+        EdmTypeResolver.Session session = resolver.newSession();
+
+        assertEquals(EdmType.BINARY, session.propertyResolver("p1", "r1", "payload", "AQID"));
+        assertFalse(session.hasMismatches());
+
+        session.propertyResolver("p1", "r1", "payload", "not base64 !");
+        assertTrue(session.hasMismatches());
+    }
+
+    @Test
+    void should_flag_string_column_now_holding_number_or_boolean() {
+        resolver.learn(entity("p1", "value", new EntityProperty("hello")));
+        EdmTypeResolver.Session session = resolver.newSession();
+
+        session.propertyResolver("p1", "r1", "value", "42");
+
+        assertEquals(Collections.singleton("p1"), session.getMismatchedPartitions());
+    }
+
+    @Test
+    void should_accept_numeric_string_column_once_learnt() {
+        resolver.learn(entity("p1", "value", new EntityProperty("7")));
+        EdmTypeResolver.Session session = resolver.newSession();
+
+        assertEquals(EdmType.STRING, session.propertyResolver("p1", "r1", "value", "42"));
+        assertFalse(session.hasMismatches());
+    }
+
+    @Test
+    void should_learn_again_forgotten_partition() {
+        resolver.learn(entity("p1", "count", new EntityProperty(42)));
+        resolver.forget("p1");
+        assertFalse(resolver.knows("p1"));
+
+        resolver.learn(entity("p1", "count", new EntityProperty("forty-two")));
+        EdmTypeResolver.Session session = resolver.newSession();
+
+        assertEquals(EdmType.STRING, session.propertyResolver("p1", "r1", "count", "forty-two"));
+        assertFalse(session.hasMismatches());
+    }
+
+    private static DynamicTableEntity entity(String partitionKey, String column, EntityProperty value) {
+        DynamicTableEntity entity = new DynamicTableEntity(partitionKey, "r1");
+        entity.getProperties().put(column, value);
+        return entity;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.azure_table;
+
+import static com.doanduyhai.azure.spring_config.azure_table.PropertyValueDao.PROPERTY_VALUE_ROW_KEY;
+import static com.doanduyhai.azure.spring_config.azure_table.PropertyValueDao.VALUE_COLUMN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.microsoft.azure.storage.table.DynamicTableEntity;
+import com.microsoft.azure.storage.table.EntityProperty;
+
+class PropertyImporterTest {
+
+    private final InMemoryPropertyValueDao dao = new InMemoryPropertyValueDao();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void should_flatten_lists_and_maps_of_yaml_file() throws IOException {
+        Path file = tempDir.resolve("backend.yml");
+        Files.write(file, Arrays.asList(
+                "app:",
+                "  myList:",
+                "    - first",
+                "    - second",
+                "  myMap:",
+                "    key1: value1",
+                "    key2: value2",
+                "  myOauth2Config:",
+                "    dev:",
+                "      clientId: myClientId"), StandardCharsets.UTF_8);
+
+        PropertyImporter.ImportResult result = new PropertyImporter(dao)
+                .mapProperties("app.myMap")
+                .importFile(file);
+
+        assertTrue(result.isSuccess());
+        assertEquals(3, result.getInserted());
+        assertEquals("first", dao.column("app.myList", "_0"));
+        assertEquals("second", dao.column("app.myList", "_1"));
+        assertEquals("value1", dao.column("app.myMap", "key1"));
+        assertEquals("value2", dao.column("app.myMap", "key2"));
+        assertEquals("myClientId", dao.column("app.myOauth2Config.dev.clientId", VALUE_COLUMN));
+    }
+
+    @Test
+    void should_not_write_anything_when_reimporting_same_properties() {
+        Map<String, Object> properties = properties("app.val1", "value1", "app.myList[0]", "first");
+        new PropertyImporter(dao).importProperties(properties);
+        int writes = dao.writes.get();
+
+        PropertyImporter.ImportResult result = new PropertyImporter(dao).importProperties(properties);
+
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getUnchanged());
+        assertEquals(0, result.getInserted() + result.getUpdated() + result.getDeleted());
+        assertEquals(writes, dao.writes.get());
+    }
+
+    @Test
+    void should_only_update_changed_properties() {
+        new PropertyImporter(dao).importProperties(properties("app.val1", "value1", "app.val2", "value2"));
+
+        PropertyImporter.ImportResult result = new PropertyImporter(dao)
+                .importProperties(properties("app.val1", "value1", "app.val2", "changed"));
+
+        assertTrue(result.isSuccess());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getUnchanged());
+        assertEquals("changed", dao.column("app.val2", VALUE_COLUMN));
+    }
+
+    @Test
+    void should_delete_missing_properties_only_when_asked() {
+        new PropertyImporter(dao).importProperties(properties("app.val1", "value1", "app.val2", "value2"));
+
+        PropertyImporter.ImportResult kept = new PropertyImporter(dao).importProperties(properties("app.val1", "value1"));
+        assertEquals(0, kept.getDeleted());
+        assertEquals("value2", dao.column("app.val2", VALUE_COLUMN));
+
+        PropertyImporter.ImportResult deleted = new PropertyImporter(dao)
+                .deleteMissing(true)
+                .importProperties(properties("app.val1", "value1"));
+        assertEquals(1, deleted.getDeleted());
+        assertFalse(dao.entities.containsKey("app.val2"));
+    }
+
+    @Test
+    void should_reject_simple_and_list_property_with_same_name() {
+        PropertyImporter.ImportResult result = new PropertyImporter(dao)
+                .importProperties(properties("app.myList", "x", "app.myList[0]", "y", "app.val1", "value1"));
+
+        assertEquals(Arrays.asList("app.myList", "app.myList[0]"), failedNames(result));
+        assertEquals(1, result.getInserted());
+        assertFalse(dao.entities.containsKey("app.myList"));
+    }
+
+    @Test
+    void should_reject_simple_and_map_property_with_same_name_without_deleting_it() {
+        new PropertyImporter(dao).importProperties(properties("app.myMap", "x"));
+
+        PropertyImporter.ImportResult result = new PropertyImporter(dao)
+                .mapProperties("app.myMap")
+                .deleteMissing(true)
+                .importProperties(properties("app.myMap", "x", "app.myMap.key1", "value1"));
+
+        assertEquals(Arrays.asList("app.myMap", "app.myMap.key1"), failedNames(result));
+        assertEquals(0, result.getDeleted());
+        assertEquals("x", dao.column("app.myMap", VALUE_COLUMN));
+    }
+
+    private static Map<String, Object> properties(String... namesAndValues) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            properties.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return properties;
+    }
+
+    private static List<String> failedNames(PropertyImporter.ImportResult result) {
+        return result.getFailures()
+                .stream()
+                .map(Pair::getKey)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Serves the property rows and applies the batches in memory, replaces and deletes being conditional on the ETag
+     */
+    private static class InMemoryPropertyValueDao extends PropertyValueDao {
+        private final Map<String, DynamicTableEntity> entities = new ConcurrentSkipListMap<>();
+        private final AtomicInteger writes = new AtomicInteger();
+
+        private InMemoryPropertyValueDao() {
+            super("UseDevelopmentStorage=true", "BackendConfig");
+        }
+
+        private String column(String propertyName, String column) {
+            EntityProperty property = entities.get(propertyName).getProperties().get(column);
+            return property != null ? property.getValueAsString() : null;
+        }
+
+        @Override
+        public FilterQuery filterQuery(GenericFilter... filters) {
+            return new FilterQuery(Arrays.asList(filters)) {
+                @Override
+                public Stream<DynamicTableEntity> stream() {
+                    return new ArrayList<>(entities.values())
+                            .stream()
+                            .filter(entity -> PROPERTY_VALUE_ROW_KEY.equals(entity.getRowKey()));
+                }
+            };
+        }
+
+        @Override
+        public CRUD crud() {
+            return new CRUD() {
+                @Override
+                public BatchResult<DynamicTableEntity> batch(BatchOperationType operationType, Collection<DynamicTableEntity> batchEntities,
+                                                             int parallelism) {
+                    BatchResult<DynamicTableEntity> batchResult = new BatchResult<>();
+                    for (DynamicTableEntity entity : batchEntities) {
+                        DynamicTableEntity current = entities.get(entity.getPartitionKey());
+                        boolean sameEtag = current != null && current.getEtag().equals(entity.getEtag());
+                        if (operationType == BatchOperationType.INSERT && current == null
+                                || operationType == BatchOperationType.REPLACE && sameEtag) {
+                            entity.setEtag(String.valueOf(writes.incrementAndGet()));
+                            entities.put(entity.getPartitionKey(), entity);
+                            batchResult.addSucceeded(Collections.singletonList(entity));
+                        } else if (operationType == BatchOperationType.DELETE && sameEtag) {
+                            writes.incrementAndGet();
+                            entities.remove(entity.getPartitionKey());
+                            batchResult.addSucceeded(Collections.singletonList(entity));
+                        } else {
+                            batchResult.addFailed(Collections.singletonList(entity),
+                                    new IllegalStateException(operationType + " rejected for " + entity.getPartitionKey()));
+                        }
+                    }
+                    return batchResult;
+                }
+            };
+        }
+    }
+}
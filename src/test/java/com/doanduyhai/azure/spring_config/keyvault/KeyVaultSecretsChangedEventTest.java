@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.keyvault;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.doanduyhai.azure.spring_config.utils.LocalSnapshotFile;
+
+class KeyVaultSecretsChangedEventTest {
+
+    @TempDir
+    Path tempDir;
+
+    private KeyVaultOperation operation;
+
+    @BeforeEach
+    void createOperation() {
+        // Served from the local cache, without any key vault
+        final LocalSnapshotFile localCache = new LocalSnapshotFile(tempDir.resolve("secrets.cache"), null, 0L);
+        localCache.write(Collections.emptyMap());
+        operation = new KeyVaultOperation(null, 0L, Collections.emptyList(), false, localCache, 1);
+    }
+
+    @AfterEach
+    void closeOperation() {
+        operation.close();
+    }
+
+    @Test
+    void should_match_relaxed_prefixes() {
+        final KeyVaultSecretsChangedEvent event = new KeyVaultSecretsChangedEvent(operation, 1L,
+                Collections.singleton("acme.myproject.first.name"));
+
+        assertTrue(event.affects("acme.my-project"));
+        assertTrue(event.affects("acme.myProject"));
+        assertTrue(event.affects("acme.my_project.first"));
+        assertTrue(event.affects("acme.myproject.first.name"));
+        assertFalse(event.affects("acme.my-project.first.names"));
+        assertFalse(event.affects("acme.other"));
+    }
+}
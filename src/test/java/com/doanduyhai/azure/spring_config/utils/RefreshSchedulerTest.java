@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doanduyhai.azure.spring_config.utils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class RefreshSchedulerTest {
+
+    @Test
+    void should_never_run_refresh_of_closed_context_again() throws Exception {
+        final Semaphore runs = new Semaphore(0);
+        final RefreshScheduler.ScheduledRefresh refresh = RefreshScheduler.shared().schedule("test", 20L, runs::release);
+        assertTrue(runs.tryAcquire(1, TimeUnit.SECONDS));
+
+        // What closing the property sources of a context does
+        refresh.cancel();
+        Thread.sleep(50);
+        runs.drainPermits();
+
+        assertFalse(runs.tryAcquire(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void should_keep_running_other_refreshes_once_a_context_is_closed() throws Exception {
+        final Semaphore closedRuns = new Semaphore(0);
+        final Semaphore openRuns = new Semaphore(0);
+        final RefreshScheduler.ScheduledRefresh closed = RefreshScheduler.shared().schedule("closed", 20L, closedRuns::release);
+        final RefreshScheduler.ScheduledRefresh open = RefreshScheduler.shared().schedule("open", 20L, openRuns::release);
+
+        closed.cancel();
+
+        assertTrue(openRuns.tryAcquire(3, 1, TimeUnit.SECONDS));
+        open.cancel();
+    }
+
+    @Test
+    void should_run_submitted_task_once_on_scheduler_thread() throws Exception {
+        final Semaphore runs = new Semaphore(0);
+        final AtomicReference<String> threadName = new AtomicReference<>();
+
+        RefreshScheduler.shared().submit("failing", () -> {
+            throw new IllegalStateException("Azure unreachable");
+        }).get(1, TimeUnit.SECONDS);
+        RefreshScheduler.shared().submit("reconcile", () -> {
+            threadName.set(Thread.currentThread().getName());
+            runs.release();
+        }).get(1, TimeUnit.SECONDS);
+
+        assertTrue(threadName.get().startsWith("azure-config-refresh-"));
+        assertFalse(runs.tryAcquire(2, 200, TimeUnit.MILLISECONDS));
+    }
+}